@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.benchmark;
+
+import org.lineageos.settings.policy.core.ProfileTable;
+import org.lineageos.settings.policy.core.RefreshPolicy;
+import org.lineageos.settings.policy.core.ThermalPolicy;
+
+import java.util.Map;
+
+/**
+ * Measures the throughput of the thermal and refresh rate decisions, the work the
+ * policy host does per foreground, screen or orientation change.
+ *
+ * <pre>
+ * XiaomiPartsPolicyBenchmark [DECISIONS]
+ * </pre>
+ */
+public final class PolicyBenchmark {
+
+    private static final int PACKAGES = 200;
+    private static final int WARMUP_DECISIONS = 1_000_000;
+
+    private PolicyBenchmark() {
+        // This class is not supposed to be instantiated
+    }
+
+    public static void main(String[] args) {
+        final int decisions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        // Spread a realistic number of packages over the segments, half unassigned
+        final String[] packages = new String[PACKAGES];
+        final StringBuilder thermal = new StringBuilder();
+        final StringBuilder refresh = new StringBuilder();
+        for (int i = 0; i < PACKAGES; i++) {
+            packages[i] = "com.example.app" + i;
+        }
+        for (int segment = 0; segment < 8; segment++) {
+            thermal.append("thermal.").append(segment).append('=');
+            for (int i = segment; i < PACKAGES / 2; i += 8) {
+                thermal.append(packages[i]).append(',');
+            }
+            thermal.append(':');
+        }
+        for (int segment = 0; segment < 3; segment++) {
+            refresh.append("refresh.").append(segment).append('=');
+            for (int i = segment; i < PACKAGES / 2; i += 3) {
+                refresh.append(packages[i]).append(',');
+            }
+            refresh.append(':');
+        }
+
+        long start = System.nanoTime();
+        final Map<String, Integer> thermalStates = ProfileTable.parse(thermal.toString());
+        final Map<String, Integer> refreshStates = ProfileTable.parse(refresh.toString());
+        System.out.println("parse: " + (System.nanoTime() - start) / 1000 + " us");
+
+        run(thermalStates, refreshStates, packages, WARMUP_DECISIONS);
+        start = System.nanoTime();
+        final long checksum = run(thermalStates, refreshStates, packages, decisions);
+        final long elapsed = System.nanoTime() - start;
+        System.out.println(decisions + " decisions: " + elapsed / 1_000_000 + " ms, "
+                + (long) (decisions * 1e9 / elapsed) + " decisions/s (" + checksum + ")");
+    }
+
+    private static long run(Map<String, Integer> thermalStates,
+            Map<String, Integer> refreshStates, String[] packages, int decisions) {
+        long checksum = 0;
+        for (int i = 0; i < decisions; i++) {
+            final String packageName = packages[i % packages.length];
+            final boolean screenOn = (i & 7) != 0;
+            final boolean landscape = (i & 1) != 0;
+            checksum += ThermalPolicy.getSconfig(
+                    ThermalPolicy.getState(thermalStates, packageName), screenOn).length();
+            final int refreshState = RefreshPolicy.getState(refreshStates, packageName);
+            checksum += (long) RefreshPolicy.getMaxRate(refreshState, landscape, 90f);
+            checksum += (long) RefreshPolicy.getMinRate(refreshState, landscape, 60f);
+        }
+        // Returned so the loop can't be optimized away
+        return checksum;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.replay;
+
+import org.lineageos.settings.policy.core.PolicyTrace;
+import org.lineageos.settings.policy.core.ProfileTable;
+import org.lineageos.settings.policy.core.RefreshPolicy;
+import org.lineageos.settings.policy.core.ThermalPolicy;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Feeds a trace recorded by the policy host through the thermal and refresh rate
+ * decision logic and reports what it would have done.
+ *
+ * <pre>
+ * XiaomiPartsPolicyReplay [--thermal TABLE] [--refresh TABLE]
+ *         [--min-rate HZ] [--peak-rate HZ] TRACE
+ * </pre>
+ *
+ * The tables use the format stored in the app's shared preferences, e.g.
+ * "thermal.benchmark=com.example,:thermal.browser=:...". Rates default to 120 Hz.
+ */
+public final class PolicyReplay {
+
+    private Map<String, Integer> mThermalStates = Collections.emptyMap();
+    private Map<String, Integer> mRefreshStates = Collections.emptyMap();
+    private float mUserMinRate = RefreshPolicy.RATE_DEFAULT;
+    private float mUserMaxRate = RefreshPolicy.RATE_DEFAULT;
+
+    // Inputs
+    private String mForegroundApp = "";
+    private boolean mScreenOn = true;
+    private boolean mLandscape = false;
+
+    private final Policy mThermal = new Policy("thermal");
+    private final Policy mRefresh = new Policy("refresh");
+    private final Map<Byte, Integer> mEventCounts = new TreeMap<>();
+
+    /**
+     * Decision and write accounting for one policy. A decision whose value equals the
+     * one already applied is redundant, the others are issued as writes.
+     */
+    private static final class Policy {
+        final String name;
+        final Map<String, Long> dwellMs = new TreeMap<>();
+        long decisions;
+        long writes;
+        long redundant;
+        String applied;
+        long appliedSinceMs;
+
+        Policy(String name) {
+            this.name = name;
+        }
+
+        void decide(long timeMs, String value) {
+            decisions++;
+            if (value.equals(applied)) {
+                redundant++;
+                return;
+            }
+            writes++;
+            account(timeMs);
+            applied = value;
+        }
+
+        void account(long timeMs) {
+            if (applied != null) {
+                dwellMs.merge(applied, timeMs - appliedSinceMs, Long::sum);
+            }
+            appliedSinceMs = timeMs;
+        }
+
+        void print() {
+            System.out.println(name + ": decisions=" + decisions + " writes=" + writes
+                    + " redundant=" + redundant);
+            for (Map.Entry<String, Long> entry : dwellMs.entrySet()) {
+                System.out.println("  " + entry.getKey() + ": " + entry.getValue() + "ms");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        final PolicyReplay replay = new PolicyReplay();
+        String tracePath = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--thermal":
+                    replay.mThermalStates = ProfileTable.parse(args[++i]);
+                    break;
+                case "--refresh":
+                    replay.mRefreshStates = ProfileTable.parse(args[++i]);
+                    break;
+                case "--min-rate":
+                    replay.mUserMinRate = Float.parseFloat(args[++i]);
+                    break;
+                case "--peak-rate":
+                    replay.mUserMaxRate = Float.parseFloat(args[++i]);
+                    break;
+                default:
+                    tracePath = args[i];
+                    break;
+            }
+        }
+        if (tracePath == null) {
+            System.err.println("Usage: PolicyReplay [--thermal TABLE] [--refresh TABLE]"
+                    + " [--min-rate HZ] [--peak-rate HZ] TRACE");
+            System.exit(1);
+        }
+        replay.run(tracePath);
+    }
+
+    private void run(String tracePath) throws IOException {
+        final PolicyTrace.Reader reader = new PolicyTrace.Reader(
+                new BufferedInputStream(new FileInputStream(tracePath)));
+        final PolicyTrace.Event event = new PolicyTrace.Event();
+        long startMs = -1;
+        long endMs = 0;
+        try {
+            while (reader.next(event)) {
+                if (startMs < 0) {
+                    startMs = event.timeMs;
+                }
+                endMs = event.timeMs;
+                mEventCounts.merge(event.type, 1, Integer::sum);
+                onEvent(event);
+            }
+        } finally {
+            reader.close();
+        }
+        mThermal.account(endMs);
+        mRefresh.account(endMs);
+
+        System.out.println("trace: " + (endMs - Math.max(startMs, 0)) + "ms, events="
+                + mEventCounts);
+        mThermal.print();
+        mRefresh.print();
+    }
+
+    /**
+     * Mirrors the dispatch of the policy host and its thermal and refresh controllers.
+     */
+    private void onEvent(PolicyTrace.Event event) {
+        switch (event.type) {
+            case PolicyTrace.EVENT_FOREGROUND_APP:
+                mForegroundApp = event.packageName;
+                decideThermal(event.timeMs);
+                decideRefresh(event.timeMs);
+                break;
+            case PolicyTrace.EVENT_SCREEN:
+                mScreenOn = event.on;
+                decideThermal(event.timeMs);
+                if (mScreenOn && !mForegroundApp.isEmpty()) {
+                    decideRefresh(event.timeMs);
+                }
+                break;
+            case PolicyTrace.EVENT_ORIENTATION:
+                mLandscape = event.on;
+                if (!mForegroundApp.isEmpty() && RefreshPolicy.followsOrientation(
+                        RefreshPolicy.getState(mRefreshStates, mForegroundApp))) {
+                    decideRefresh(event.timeMs);
+                }
+                break;
+            case PolicyTrace.EVENT_BATTERY:
+                // Not an input of the thermal and refresh policies
+                break;
+        }
+    }
+
+    private void decideThermal(long timeMs) {
+        final int state = ThermalPolicy.getState(mThermalStates, mForegroundApp);
+        mThermal.decide(timeMs, "sconfig " + ThermalPolicy.getSconfig(state, mScreenOn));
+    }
+
+    private void decideRefresh(long timeMs) {
+        final int state = RefreshPolicy.getState(mRefreshStates, mForegroundApp);
+        mRefresh.decide(timeMs,
+                RefreshPolicy.getMinRate(state, mLandscape, mUserMinRate) + "-"
+                + RefreshPolicy.getMaxRate(state, mLandscape, mUserMaxRate) + "Hz");
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import java.util.Map;
+
+/**
+ * Decides which performance profile to run for a given foreground app and which power
+ * HAL mode holds it.
+ */
+public final class PerfPolicy {
+
+    public static final int STATE_DEFAULT = 0;
+    public static final int STATE_PERFORMANCE = 1;
+    public static final int STATE_GAMING = 2;
+    public static final int STATE_BATTERY = 3;
+
+    private PerfPolicy() {
+        // This class is not supposed to be instantiated
+    }
+
+    /**
+     * @param states package to state table as returned by {@link ProfileTable#parse}
+     */
+    public static int getState(Map<String, Integer> states, String packageName) {
+        return states.getOrDefault(packageName, STATE_DEFAULT);
+    }
+
+    /**
+     * @return the state to run, profiles only apply while the screen is on
+     */
+    public static int getEffectiveState(int state, boolean screenOn) {
+        return screenOn ? state : STATE_DEFAULT;
+    }
+
+    /**
+     * @param modes the mode of every profile state, starting with {@link #STATE_PERFORMANCE}
+     * @return the mode to hold for the given state, or {@link PowerModePolicy#MODE_NONE}
+     */
+    public static int getMode(int state, boolean screenOn, int[] modes) {
+        final int effective = getEffectiveState(state, screenOn);
+        if (effective == STATE_DEFAULT || effective > modes.length) {
+            return PowerModePolicy.MODE_NONE;
+        }
+        return modes[effective - 1];
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format for the input events seen by the policy host, so that real
+ * sessions can be replayed against the decision logic off-device.
+ *
+ * <p>A trace starts with a magic number and a version, followed by records. Each record
+ * is one type byte, the time since the previous record as a varint in milliseconds and
+ * a type specific payload. A package name is written out the first time it is seen and
+ * referenced by index afterwards.
+ */
+public final class PolicyTrace {
+
+    public static final int MAGIC = 0x50505452; // "PPTR"
+    public static final int VERSION = 1;
+
+    public static final byte EVENT_FOREGROUND_APP = 1;
+    public static final byte EVENT_SCREEN = 2;
+    public static final byte EVENT_ORIENTATION = 3;
+    public static final byte EVENT_BATTERY = 4;
+
+    // Package payload markers
+    private static final byte PACKAGE_NEW = 0;
+    private static final byte PACKAGE_INDEX = 1;
+
+    private PolicyTrace() {
+        // This class is not supposed to be instantiated
+    }
+
+    /**
+     * A decoded record. Only the fields that belong to {@link #type} are meaningful.
+     */
+    public static final class Event {
+        public byte type;
+        public long timeMs;
+        public String packageName;
+        public boolean on;
+        public int level;
+    }
+
+    public static final class Writer {
+        private final DataOutputStream mOut;
+        private final Map<String, Integer> mPackages = new HashMap<>();
+        private long mLastTimeMs = -1;
+
+        public Writer(OutputStream out, long startTimeMs) throws IOException {
+            mOut = new DataOutputStream(out);
+            mOut.writeInt(MAGIC);
+            mOut.writeInt(VERSION);
+            mOut.writeLong(startTimeMs);
+            mLastTimeMs = startTimeMs;
+        }
+
+        public void writeForegroundApp(long timeMs, String packageName) throws IOException {
+            writeHeader(EVENT_FOREGROUND_APP, timeMs);
+            final Integer index = mPackages.get(packageName);
+            if (index != null) {
+                mOut.writeByte(PACKAGE_INDEX);
+                writeVarint(index);
+            } else {
+                mPackages.put(packageName, mPackages.size());
+                mOut.writeByte(PACKAGE_NEW);
+                mOut.writeUTF(packageName);
+            }
+        }
+
+        public void writeScreen(long timeMs, boolean on) throws IOException {
+            writeHeader(EVENT_SCREEN, timeMs);
+            mOut.writeBoolean(on);
+        }
+
+        public void writeOrientation(long timeMs, boolean landscape) throws IOException {
+            writeHeader(EVENT_ORIENTATION, timeMs);
+            mOut.writeBoolean(landscape);
+        }
+
+        public void writeBattery(long timeMs, int level, boolean plugged) throws IOException {
+            writeHeader(EVENT_BATTERY, timeMs);
+            mOut.writeByte(level);
+            mOut.writeBoolean(plugged);
+        }
+
+        public int size() {
+            return mOut.size();
+        }
+
+        public void flush() throws IOException {
+            mOut.flush();
+        }
+
+        public void close() throws IOException {
+            mOut.close();
+        }
+
+        private void writeHeader(byte type, long timeMs) throws IOException {
+            mOut.writeByte(type);
+            writeVarint(Math.max(0, timeMs - mLastTimeMs));
+            mLastTimeMs = timeMs;
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7fL) != 0) {
+                mOut.writeByte((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            mOut.writeByte((int) value);
+        }
+    }
+
+    public static final class Reader {
+        private final DataInputStream mIn;
+        private final List<String> mPackages = new ArrayList<>();
+        private long mTimeMs;
+
+        public Reader(InputStream in) throws IOException {
+            mIn = new DataInputStream(in);
+            if (mIn.readInt() != MAGIC) {
+                throw new IOException("Not a policy trace");
+            }
+            final int version = mIn.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported policy trace version " + version);
+            }
+            mTimeMs = mIn.readLong();
+        }
+
+        /**
+         * Decodes the next record into the given event.
+         *
+         * @return false once the end of the trace is reached
+         */
+        public boolean next(Event event) throws IOException {
+            final int type;
+            try {
+                type = mIn.readByte();
+            } catch (EOFException e) {
+                return false;
+            }
+            mTimeMs += readVarint();
+            event.type = (byte) type;
+            event.timeMs = mTimeMs;
+            switch (type) {
+                case EVENT_FOREGROUND_APP:
+                    if (mIn.readByte() == PACKAGE_NEW) {
+                        event.packageName = mIn.readUTF();
+                        mPackages.add(event.packageName);
+                    } else {
+                        event.packageName = mPackages.get((int) readVarint());
+                    }
+                    break;
+                case EVENT_SCREEN:
+                case EVENT_ORIENTATION:
+                    event.on = mIn.readBoolean();
+                    break;
+                case EVENT_BATTERY:
+                    event.level = mIn.readUnsignedByte();
+                    event.on = mIn.readBoolean();
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + type);
+            }
+            return true;
+        }
+
+        public void close() throws IOException {
+            mIn.close();
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = mIn.readUnsignedByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Who holds which power HAL mode. A mode is on while at least one holder holds it, so
+ * overlapping requests for the same mode only turn it off once the last one ends. Not
+ * thread safe.
+ */
+public final class PowerModeHolds {
+
+    private final Map<Integer, Set<String>> mHolders = new HashMap<>();
+
+    /**
+     * Records that the holder wants the mode. Holding a mode twice has no effect.
+     *
+     * @return whether nobody held the mode before, so it has to be turned on
+     */
+    public boolean acquire(int mode, String holder) {
+        final Set<String> holders = mHolders.computeIfAbsent(mode, m -> new HashSet<>());
+        return holders.add(holder) && holders.size() == 1;
+    }
+
+    /**
+     * Records that the holder no longer wants the mode. Releasing a mode the holder does
+     * not hold has no effect.
+     *
+     * @return whether the holder was the last one, so the mode has to be turned off
+     */
+    public boolean release(int mode, String holder) {
+        final Set<String> holders = mHolders.get(mode);
+        if (holders == null || !holders.remove(holder)) {
+            return false;
+        }
+        if (holders.isEmpty()) {
+            mHolders.remove(mode);
+            return true;
+        }
+        return false;
+    }
+
+    public int getCount(int mode) {
+        final Set<String> holders = mHolders.get(mode);
+        return holders != null ? holders.size() : 0;
+    }
+
+    /**
+     * @return the holders of every held mode, e.g. "{2=[perf, powermode]}"
+     */
+    @Override
+    public String toString() {
+        return new TreeMap<>(mHolders).toString();
+    }
+}
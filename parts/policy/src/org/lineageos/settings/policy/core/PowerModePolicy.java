@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import java.util.Map;
+
+/**
+ * Decides which power HAL mode to hold for a given foreground app.
+ */
+public final class PowerModePolicy {
+
+    public static final int STATE_NONE = 0;
+    public static final int STATE_SUSTAINED_PERFORMANCE = 1;
+    public static final int STATE_FIXED_PERFORMANCE = 2;
+    public static final int STATE_EXPENSIVE_RENDERING = 3;
+
+    // Values of android.hardware.power.Mode
+    public static final int MODE_NONE = -1;
+    public static final int MODE_SUSTAINED_PERFORMANCE = 2;
+    public static final int MODE_FIXED_PERFORMANCE = 3;
+    public static final int MODE_EXPENSIVE_RENDERING = 6;
+
+    private PowerModePolicy() {
+        // This class is not supposed to be instantiated
+    }
+
+    /**
+     * @param states package to state table as returned by {@link ProfileTable#parse}
+     */
+    public static int getState(Map<String, Integer> states, String packageName) {
+        return states.getOrDefault(packageName, STATE_NONE);
+    }
+
+    /**
+     * @return the mode to hold for the given state, or {@link #MODE_NONE}. No mode is
+     *         held while the screen is off whatever app is on top.
+     */
+    public static int getMode(int state, boolean screenOn) {
+        if (!screenOn) {
+            return MODE_NONE;
+        }
+
+        switch (state) {
+            case STATE_SUSTAINED_PERFORMANCE:
+                return MODE_SUSTAINED_PERFORMANCE;
+            case STATE_FIXED_PERFORMANCE:
+                return MODE_FIXED_PERFORMANCE;
+            case STATE_EXPENSIVE_RENDERING:
+                return MODE_EXPENSIVE_RENDERING;
+            case STATE_NONE:
+            default:
+                return MODE_NONE;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class ProfileTable {
+
+    private ProfileTable() {
+        // This class is not supposed to be instantiated
+    }
+
+    /**
+     * Parses a per-app profile table as stored in shared preferences, e.g.
+     * "thermal.benchmark=pkg1,pkg2,:thermal.browser=:...". Packages listed in the n-th
+     * segment map to state n + 1. If a package is listed more than once the first
+     * segment wins, matching the order the tables have always been searched in.
+     *
+     * @return an unmodifiable package to state map
+     */
+    public static Map<String, Integer> parse(String value) {
+        final Map<String, Integer> states = new HashMap<>();
+        if (value == null) {
+            return Collections.unmodifiableMap(states);
+        }
+
+        final String[] modes = value.split(":");
+        for (int i = 0; i < modes.length; i++) {
+            final int separator = modes[i].indexOf('=');
+            for (String packageName : modes[i].substring(separator + 1).split(",")) {
+                if (!packageName.isEmpty()) {
+                    states.putIfAbsent(packageName, i + 1);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(states);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import java.util.Map;
+
+/**
+ * Decides the min and peak refresh rates for a given foreground app. Apps without a
+ * profile get the rates the user picked, landscape apps follow the orientation.
+ */
+public final class RefreshPolicy {
+
+    public static final int STATE_DEFAULT = 0;
+    public static final int STATE_STANDARD = 1;
+    public static final int STATE_EXTREME = 2;
+    public static final int STATE_LAND = 3;
+
+    public static final float RATE_DEFAULT = 120f;
+    public static final float RATE_STANDARD = 60f;
+    public static final float RATE_EXTREME = 120f;
+    public static final float RATE_LAND = 60f;
+
+    private RefreshPolicy() {
+        // This class is not supposed to be instantiated
+    }
+
+    /**
+     * @param states package to state table as returned by {@link ProfileTable#parse}
+     */
+    public static int getState(Map<String, Integer> states, String packageName) {
+        return states.getOrDefault(packageName, STATE_DEFAULT);
+    }
+
+    /**
+     * @return whether the state overrides the user's rates
+     */
+    public static boolean hasProfile(int state) {
+        return state != STATE_DEFAULT;
+    }
+
+    /**
+     * @return whether the rates for the state change with the orientation
+     */
+    public static boolean followsOrientation(int state) {
+        return state == STATE_LAND;
+    }
+
+    public static float getMinRate(int state, boolean landscape, float userMinRate) {
+        if (state == STATE_LAND) {
+            return landscape ? RATE_LAND : RATE_EXTREME;
+        }
+        return userMinRate;
+    }
+
+    public static float getMaxRate(int state, boolean landscape, float userMaxRate) {
+        switch (state) {
+            case STATE_STANDARD:
+                return RATE_STANDARD;
+            case STATE_EXTREME:
+                return RATE_EXTREME;
+            case STATE_LAND:
+                return landscape ? RATE_LAND : RATE_EXTREME;
+            case STATE_DEFAULT:
+            default:
+                return userMaxRate;
+        }
+    }
+}
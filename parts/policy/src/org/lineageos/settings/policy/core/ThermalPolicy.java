@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import java.util.Map;
+
+/**
+ * Decides which thermal config the kernel should run for a given foreground app.
+ */
+public final class ThermalPolicy {
+
+    public static final int STATE_DEFAULT = 0;
+    public static final int STATE_BENCHMARK = 1;
+    public static final int STATE_BROWSER = 2;
+    public static final int STATE_CAMERA = 3;
+    public static final int STATE_DIALER = 4;
+    public static final int STATE_GAMING = 5;
+    public static final int STATE_NAVIGATION = 6;
+    public static final int STATE_STREAMING = 7;
+    public static final int STATE_VIDEO = 8;
+
+    public static final String SCONFIG_DEFAULT = "0";
+    public static final String SCONFIG_BENCHMARK = "10";
+    public static final String SCONFIG_BROWSER = "11";
+    public static final String SCONFIG_CAMERA = "12";
+    public static final String SCONFIG_DIALER = "8";
+    public static final String SCONFIG_GAMING = "9";
+    public static final String SCONFIG_NAVIGATION = "19";
+    public static final String SCONFIG_STREAMING = "14";
+    public static final String SCONFIG_VIDEO = "21";
+
+    private ThermalPolicy() {
+        // This class is not supposed to be instantiated
+    }
+
+    /**
+     * @param states package to state table as returned by {@link ProfileTable#parse}
+     */
+    public static int getState(Map<String, Integer> states, String packageName) {
+        return states.getOrDefault(packageName, STATE_DEFAULT);
+    }
+
+    /**
+     * @return the sconfig value for the given state, the default config is used while
+     *         the screen is off whatever app is on top
+     */
+    public static String getSconfig(int state, boolean screenOn) {
+        if (!screenOn) {
+            return SCONFIG_DEFAULT;
+        }
+
+        switch (state) {
+            case STATE_BENCHMARK:
+                return SCONFIG_BENCHMARK;
+            case STATE_BROWSER:
+                return SCONFIG_BROWSER;
+            case STATE_CAMERA:
+                return SCONFIG_CAMERA;
+            case STATE_DIALER:
+                return SCONFIG_DIALER;
+            case STATE_GAMING:
+                return SCONFIG_GAMING;
+            case STATE_NAVIGATION:
+                return SCONFIG_NAVIGATION;
+            case STATE_STREAMING:
+                return SCONFIG_STREAMING;
+            case STATE_VIDEO:
+                return SCONFIG_VIDEO;
+            case STATE_DEFAULT:
+            default:
+                return SCONFIG_DEFAULT;
+        }
+    }
+}
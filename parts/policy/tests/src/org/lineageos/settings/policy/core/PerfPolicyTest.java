@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class PerfPolicyTest {
+
+    private static final int[] MODES = {4, 18, 11};
+
+    @Test
+    public void profilesMapToTheirModes() {
+        assertEquals(4, PerfPolicy.getMode(PerfPolicy.STATE_PERFORMANCE, true, MODES));
+        assertEquals(18, PerfPolicy.getMode(PerfPolicy.STATE_GAMING, true, MODES));
+        assertEquals(11, PerfPolicy.getMode(PerfPolicy.STATE_BATTERY, true, MODES));
+    }
+
+    @Test
+    public void defaultHoldsNoMode() {
+        assertEquals(PowerModePolicy.MODE_NONE,
+                PerfPolicy.getMode(PerfPolicy.STATE_DEFAULT, true, MODES));
+    }
+
+    @Test
+    public void screenOffHoldsNoMode() {
+        assertEquals(PowerModePolicy.MODE_NONE,
+                PerfPolicy.getMode(PerfPolicy.STATE_GAMING, false, MODES));
+    }
+
+    @Test
+    public void missingModesHoldNothing() {
+        assertEquals(PowerModePolicy.MODE_NONE,
+                PerfPolicy.getMode(PerfPolicy.STATE_BATTERY, true, new int[] {4}));
+    }
+
+    @Test
+    public void unlistedPackagesGetTheDefault() {
+        assertEquals(PerfPolicy.STATE_DEFAULT,
+                PerfPolicy.getState(Collections.emptyMap(), "com.example"));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PowerModeHoldsTest {
+
+    private static final int MODE = PowerModePolicy.MODE_SUSTAINED_PERFORMANCE;
+    private static final int OTHER_MODE = PowerModePolicy.MODE_FIXED_PERFORMANCE;
+
+    @Test
+    public void firstHolderTurnsTheModeOn() {
+        final PowerModeHolds holds = new PowerModeHolds();
+        assertTrue(holds.acquire(MODE, "powermode"));
+        assertFalse(holds.acquire(MODE, "perf"));
+        assertEquals(2, holds.getCount(MODE));
+    }
+
+    @Test
+    public void overlappingHoldersKeepTheModeOn() {
+        final PowerModeHolds holds = new PowerModeHolds();
+        holds.acquire(MODE, "powermode");
+        holds.acquire(MODE, "perf");
+
+        assertFalse(holds.release(MODE, "powermode"));
+        assertTrue(holds.release(MODE, "perf"));
+        assertEquals(0, holds.getCount(MODE));
+    }
+
+    @Test
+    public void holdingTwiceCountsOnce() {
+        final PowerModeHolds holds = new PowerModeHolds();
+        assertTrue(holds.acquire(MODE, "powermode"));
+        assertFalse(holds.acquire(MODE, "powermode"));
+        assertTrue(holds.release(MODE, "powermode"));
+    }
+
+    @Test
+    public void releasingWhatIsNotHeldIsIgnored() {
+        final PowerModeHolds holds = new PowerModeHolds();
+        assertFalse(holds.release(MODE, "powermode"));
+        holds.acquire(MODE, "perf");
+        assertFalse(holds.release(MODE, "powermode"));
+        assertEquals(1, holds.getCount(MODE));
+    }
+
+    @Test
+    public void modesAreCountedSeparately() {
+        final PowerModeHolds holds = new PowerModeHolds();
+        holds.acquire(MODE, "powermode");
+        assertTrue(holds.acquire(OTHER_MODE, "perf"));
+        assertTrue(holds.release(MODE, "powermode"));
+        assertEquals(1, holds.getCount(OTHER_MODE));
+        assertEquals("{3=[perf]}", holds.toString());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+public class ProfileTableTest {
+
+    private static final String THERMAL_TABLE = "thermal.benchmark=com.example.bench,"
+            + ":thermal.browser=org.mozilla.firefox,com.android.chrome,"
+            + ":thermal.camera=:thermal.dialer=:thermal.gaming=com.example.game,"
+            + ":thermal.navigation=:thermal.streaming=:thermal.video=";
+
+    @Test
+    public void mapsSegmentsToStates() {
+        final Map<String, Integer> states = ProfileTable.parse(THERMAL_TABLE);
+        assertEquals(4, states.size());
+        assertEquals(1, (int) states.get("com.example.bench"));
+        assertEquals(2, (int) states.get("org.mozilla.firefox"));
+        assertEquals(2, (int) states.get("com.android.chrome"));
+        assertEquals(5, (int) states.get("com.example.game"));
+    }
+
+    @Test
+    public void matchesPackagesExactly() {
+        // The tables used to be searched with String.contains(), so a package matched
+        // whenever its name was part of an assigned one
+        final Map<String, Integer> states = ProfileTable.parse(THERMAL_TABLE);
+        assertFalse(states.containsKey("com.example"));
+        assertFalse(states.containsKey("example.game"));
+        assertFalse(states.containsKey("com.example.game2"));
+        assertFalse(states.containsKey("thermal.gaming"));
+        assertFalse(states.containsKey(""));
+    }
+
+    @Test
+    public void firstSegmentWinsForDuplicates() {
+        final Map<String, Integer> states = ProfileTable.parse(
+                "refresh.standard=com.example,:refresh.extreme=com.example,:refresh.land=");
+        assertEquals(1, (int) states.get("com.example"));
+    }
+
+    @Test
+    public void handlesEmptyAndMissingTables() {
+        assertTrue(ProfileTable.parse(null).isEmpty());
+        assertTrue(ProfileTable.parse("").isEmpty());
+        assertTrue(ProfileTable.parse("perf.performance=:perf.gaming=:perf.battery=")
+                .isEmpty());
+    }
+
+    @Test
+    public void toleratesMissingTrailingSeparator() {
+        final Map<String, Integer> states = ProfileTable.parse(
+                "refresh.standard=com.a:refresh.extreme=com.b,com.c");
+        assertEquals(1, (int) states.get("com.a"));
+        assertEquals(2, (int) states.get("com.b"));
+        assertEquals(2, (int) states.get("com.c"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void returnsUnmodifiableMap() {
+        ProfileTable.parse(THERMAL_TABLE).put("com.other", 1);
+    }
+}
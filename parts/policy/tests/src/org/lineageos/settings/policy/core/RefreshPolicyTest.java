@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+public class RefreshPolicyTest {
+
+    private static final float USER_MIN = 60f;
+    private static final float USER_MAX = 90f;
+    private static final float DELTA = 0f;
+
+    @Test
+    public void resolvesAssignedPackages() {
+        final Map<String, Integer> states = ProfileTable.parse(
+                "refresh.standard=com.a,:refresh.extreme=com.b,:refresh.land=com.c,");
+        assertEquals(RefreshPolicy.STATE_STANDARD, RefreshPolicy.getState(states, "com.a"));
+        assertEquals(RefreshPolicy.STATE_EXTREME, RefreshPolicy.getState(states, "com.b"));
+        assertEquals(RefreshPolicy.STATE_LAND, RefreshPolicy.getState(states, "com.c"));
+        assertEquals(RefreshPolicy.STATE_DEFAULT, RefreshPolicy.getState(states, "com"));
+    }
+
+    @Test
+    public void defaultStateKeepsUserRates() {
+        assertFalse(RefreshPolicy.hasProfile(RefreshPolicy.STATE_DEFAULT));
+        for (boolean landscape : new boolean[] {false, true}) {
+            assertEquals(USER_MIN, RefreshPolicy.getMinRate(
+                    RefreshPolicy.STATE_DEFAULT, landscape, USER_MIN), DELTA);
+            assertEquals(USER_MAX, RefreshPolicy.getMaxRate(
+                    RefreshPolicy.STATE_DEFAULT, landscape, USER_MAX), DELTA);
+        }
+    }
+
+    @Test
+    public void fixedStatesCapThePeakRateOnly() {
+        assertTrue(RefreshPolicy.hasProfile(RefreshPolicy.STATE_STANDARD));
+        assertEquals(RefreshPolicy.RATE_STANDARD, RefreshPolicy.getMaxRate(
+                RefreshPolicy.STATE_STANDARD, false, USER_MAX), DELTA);
+        assertEquals(RefreshPolicy.RATE_EXTREME, RefreshPolicy.getMaxRate(
+                RefreshPolicy.STATE_EXTREME, true, USER_MAX), DELTA);
+        assertEquals(USER_MIN, RefreshPolicy.getMinRate(
+                RefreshPolicy.STATE_STANDARD, false, USER_MIN), DELTA);
+        assertEquals(USER_MIN, RefreshPolicy.getMinRate(
+                RefreshPolicy.STATE_EXTREME, true, USER_MIN), DELTA);
+        assertFalse(RefreshPolicy.followsOrientation(RefreshPolicy.STATE_STANDARD));
+        assertFalse(RefreshPolicy.followsOrientation(RefreshPolicy.STATE_EXTREME));
+    }
+
+    @Test
+    public void landscapeStateFollowsOrientation() {
+        assertTrue(RefreshPolicy.followsOrientation(RefreshPolicy.STATE_LAND));
+        assertEquals(RefreshPolicy.RATE_LAND, RefreshPolicy.getMinRate(
+                RefreshPolicy.STATE_LAND, true, USER_MIN), DELTA);
+        assertEquals(RefreshPolicy.RATE_LAND, RefreshPolicy.getMaxRate(
+                RefreshPolicy.STATE_LAND, true, USER_MAX), DELTA);
+        assertEquals(RefreshPolicy.RATE_EXTREME, RefreshPolicy.getMinRate(
+                RefreshPolicy.STATE_LAND, false, USER_MIN), DELTA);
+        assertEquals(RefreshPolicy.RATE_EXTREME, RefreshPolicy.getMaxRate(
+                RefreshPolicy.STATE_LAND, false, USER_MAX), DELTA);
+    }
+}
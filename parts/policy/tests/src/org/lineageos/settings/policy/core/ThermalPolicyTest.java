@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+public class ThermalPolicyTest {
+
+    private final Map<String, Integer> mStates = ProfileTable.parse(
+            "thermal.benchmark=com.example.bench,:thermal.browser=:thermal.camera="
+            + ":thermal.dialer=:thermal.gaming=com.example.game,:thermal.navigation="
+            + ":thermal.streaming=:thermal.video=com.example.video,");
+
+    @Test
+    public void resolvesAssignedPackages() {
+        assertEquals(ThermalPolicy.STATE_BENCHMARK,
+                ThermalPolicy.getState(mStates, "com.example.bench"));
+        assertEquals(ThermalPolicy.STATE_GAMING,
+                ThermalPolicy.getState(mStates, "com.example.game"));
+        assertEquals(ThermalPolicy.STATE_VIDEO,
+                ThermalPolicy.getState(mStates, "com.example.video"));
+    }
+
+    @Test
+    public void unassignedPackagesUseDefault() {
+        assertEquals(ThermalPolicy.STATE_DEFAULT, ThermalPolicy.getState(mStates, ""));
+        assertEquals(ThermalPolicy.STATE_DEFAULT,
+                ThermalPolicy.getState(mStates, "com.example"));
+    }
+
+    @Test
+    public void mapsEveryStateToItsSconfig() {
+        final String[] expected = {
+                ThermalPolicy.SCONFIG_DEFAULT,
+                ThermalPolicy.SCONFIG_BENCHMARK,
+                ThermalPolicy.SCONFIG_BROWSER,
+                ThermalPolicy.SCONFIG_CAMERA,
+                ThermalPolicy.SCONFIG_DIALER,
+                ThermalPolicy.SCONFIG_GAMING,
+                ThermalPolicy.SCONFIG_NAVIGATION,
+                ThermalPolicy.SCONFIG_STREAMING,
+                ThermalPolicy.SCONFIG_VIDEO,
+        };
+        for (int state = 0; state < expected.length; state++) {
+            assertEquals(expected[state], ThermalPolicy.getSconfig(state, true));
+        }
+        assertEquals(ThermalPolicy.SCONFIG_DEFAULT, ThermalPolicy.getSconfig(42, true));
+    }
+
+    @Test
+    public void screenOffFallsBackToDefault() {
+        for (int state = ThermalPolicy.STATE_DEFAULT; state <= ThermalPolicy.STATE_VIDEO;
+                state++) {
+            assertEquals(ThermalPolicy.SCONFIG_DEFAULT, ThermalPolicy.getSconfig(state, false));
+        }
+    }
+}
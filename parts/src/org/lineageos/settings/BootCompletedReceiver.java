@@ -33,9 +33,11 @@ import android.view.Display;
 import android.view.Display.HdrCapabilities;
 
 import org.lineageos.settings.doze.DozeUtils;
-import org.lineageos.settings.thermal.ThermalUtils;
-import org.lineageos.settings.thermal.ThermalTileService;
+import org.lineageos.settings.policy.PolicyUtils;
 import org.lineageos.settings.refreshrate.RefreshUtils;
+import org.lineageos.settings.saturation.SaturationUtils;
+import org.lineageos.settings.thermal.ThermalUtils;
+import org.lineageos.settings.utils.BootTaskScheduler;
 
 public class BootCompletedReceiver extends BroadcastReceiver {
     private static final boolean DEBUG = false;
@@ -46,45 +48,38 @@ public class BootCompletedReceiver extends BroadcastReceiver {
         if (DEBUG) Log.i(TAG, "Received intent: " + intent.getAction());
         switch (intent.getAction()) {
             case Intent.ACTION_LOCKED_BOOT_COMPLETED:
-                handleLockedBootCompleted(context);
+                // Restore the saved saturation as soon as SurfaceFlinger accepts it. This
+                // polls on its own thread and logs its own latency, so it is not a task.
+                SaturationUtils.applySavedSaturationWhenReady(context);
+                // Keep the work off the main thread and out of the broadcast dispatch path
+                handleLockedBootCompleted(context).start(goAsync());
                 break;
             case Intent.ACTION_BOOT_COMPLETED:
-                handleBootCompleted(context);
+                if (DEBUG) Log.i(TAG, "Handling boot completed.");
+                // Resend saturation in case the color mode was reset on unlock
+                SaturationUtils.applySavedSaturationWhenReady(context);
+                break;
+            default:
                 break;
         }
     }
 
-    private void handleLockedBootCompleted(Context context) {
+    private BootTaskScheduler handleLockedBootCompleted(Context context) {
         if (DEBUG) Log.i(TAG, "Handling locked boot completed.");
-        try {
-            // Start necessary services
-            startServices(context);
-
-            // Override HDR types
-            overrideHdrTypes(context);
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error during locked boot completed processing", e);
-        }
-    }
-
-    private void handleBootCompleted(Context context) {
-        if (DEBUG) Log.i(TAG, "Handling boot completed.");
-        // Add additional boot-completed actions if needed
-    }
-
-    private void startServices(Context context) {
-        if (DEBUG) Log.i(TAG, "Starting services...");
-
-        // Initialize Doze features
-        DozeUtils.onBootCompleted(context);
-
-        // Start Thermal Management Services
-        ThermalUtils.startService(context);
-
-        // Start Refresh Rate Service
-        RefreshUtils.startService(context);
-
+        return new BootTaskScheduler("LockedBootCompleted")
+                // Initialize Doze features
+                .addTask("doze", () -> DozeUtils.onBootCompleted(context))
+                // Load the per-app tables from device protected storage and commit
+                // their defaults before the first unlock
+                .addTask("thermal", () -> ThermalUtils.preload(context))
+                .addTask("refresh", () -> RefreshUtils.preload(context))
+                .addTask("saturation-table", () -> SaturationUtils.preload(context))
+                // Start the policy host if any controller has work to do, once the
+                // tables are in memory
+                .addTask("policy", () -> PolicyUtils.checkService(context),
+                        "thermal", "refresh", "saturation-table")
+                // Override HDR types
+                .addTask("hdr", () -> overrideHdrTypes(context));
     }
 
     private void overrideHdrTypes(Context context) {
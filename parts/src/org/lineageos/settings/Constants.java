@@ -21,4 +21,7 @@ public class Constants {
     // Saturation
     public static final String KEY_SATURATION = "saturation";
     public static final String KEY_SATURATION_PREVIEW = "saturation_preview";
+
+    // Performance overlay
+    public static final String KEY_PERF_OVERLAY = "perf_overlay";
 }
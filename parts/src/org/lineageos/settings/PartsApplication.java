@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings;
+
+import android.app.Application;
+import android.util.Log;
+
+import com.android.settingslib.applications.AppIconCacheManager;
+
+import org.lineageos.settings.speaker.ClearSpeakerService;
+import org.lineageos.settings.thermal.PerfOverlayService;
+
+/**
+ * This process is persistent, so anything only the settings screens need has to be
+ * given back once they are gone. The policy tables and the applied values stay.
+ */
+public class PartsApplication extends Application {
+    private static final String TAG = "PartsApplication";
+    private static final boolean DEBUG = false;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // A previous process may have died with the earpiece clean parameter on
+        ClearSpeakerService.resetAudioParameter(this);
+        // Covers both boot and a restart of this process, the service is not sticky
+        PerfOverlayService.restore(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // Dispatches to the callbacks screens registered, the per-app lists drop their
+        // ApplicationsState sessions and entries there once the UI is hidden
+        super.onTrimMemory(level);
+        if (DEBUG) Log.d(TAG, "Trimming memory, level " + level);
+        // Icons loaded for the per-app lists, halved or dropped depending on level
+        AppIconCacheManager.getInstance().trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        if (DEBUG) Log.d(TAG, "Low memory");
+        AppIconCacheManager.release();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.doze;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import org.lineageos.settings.R;
+
+import java.io.PrintWriter;
+
+/**
+ * Drives the panel doze mode from the ambient light sensor while dozing. Readings are
+ * smoothed with an exponential moving average and mapped to a doze mode through the
+ * config_dozeLux* curve, with hysteresis on the way down.
+ */
+public class AodLightSensor implements SensorEventListener {
+    private static final boolean DEBUG = false;
+    private static final String TAG = "AodLightSensor";
+
+    private final SensorManager mSensorManager;
+    private final Sensor mSensor;
+    private final HandlerThread mHandlerThread;
+    private final Handler mHandler;
+
+    private final String[] mModes;
+    private final float[] mRiseLux;
+    private final float[] mFallLux;
+    private final float mTimeConstantNs;
+    private final int mSamplingPeriodUs;
+    private final int mMaxReportLatencyUs;
+
+    // Only touched on the handler thread
+    private float mSmoothedLux;
+    private long mLastTimestampNs;
+    private int mLevel = -1;
+
+    // Written on the handler thread, read by dumps
+    private volatile boolean mRegistered;
+    private volatile float mLastLux = -1;
+
+    public AodLightSensor(Context context) {
+        mSensorManager = context.getSystemService(SensorManager.class);
+        mSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
+
+        final Resources res = context.getResources();
+        mModes = res.getStringArray(R.array.config_dozeLuxModes);
+        final int[] levels = res.getIntArray(R.array.config_dozeLuxLevels);
+        final float hysteresis = res.getInteger(R.integer.config_dozeLuxHysteresisPercent)
+                / 100f;
+        // mRiseLux[i] is where level i + 1 starts, mFallLux[i] where it ends again
+        final int count = Math.min(levels.length, mModes.length - 1);
+        mRiseLux = new float[count];
+        mFallLux = new float[count];
+        for (int i = 0; i < count; i++) {
+            mRiseLux[i] = levels[i];
+            mFallLux[i] = levels[i] * (1f - hysteresis);
+        }
+        mTimeConstantNs = res.getInteger(R.integer.config_dozeLuxTimeConstantMs) * 1000000f;
+        mSamplingPeriodUs = res.getInteger(R.integer.config_dozeLuxSamplingPeriodUs);
+        mMaxReportLatencyUs = res.getInteger(R.integer.config_dozeLuxMaxReportLatencyUs);
+
+        mHandlerThread = new HandlerThread(TAG);
+        mHandlerThread.start();
+        mHandler = new Handler(mHandlerThread.getLooper());
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        final float lux = event.values[0];
+        mLastLux = lux;
+        DozeStats.recordSensorEvent();
+
+        if (mLevel < 0) {
+            // First reading of this doze session, nothing to smooth against
+            mSmoothedLux = lux;
+        } else {
+            final long dtNs = event.timestamp - mLastTimestampNs;
+            final float alpha = dtNs <= 0 ? 0f
+                    : 1f - (float) Math.exp(-dtNs / mTimeConstantNs);
+            mSmoothedLux += alpha * (lux - mSmoothedLux);
+        }
+        mLastTimestampNs = event.timestamp;
+
+        final int level = getLevel(mSmoothedLux);
+        if (level != mLevel) {
+            if (DEBUG) {
+                Log.d(TAG, "Smoothed lux " + mSmoothedLux + ", switching to level " + level);
+            }
+            mLevel = level;
+            DozeUtils.setDozeMode(mModes[level]);
+        } else {
+            DozeStats.recordWriteSkipped();
+        }
+    }
+
+    private int getLevel(float lux) {
+        int level = mLevel < 0 ? 0 : mLevel;
+        while (level < mRiseLux.length && lux >= mRiseLux[level]) {
+            level++;
+        }
+        while (level > 0 && lux < mFallLux[level - 1]) {
+            level--;
+        }
+        return level;
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        /* Empty */
+    }
+
+    protected void enable() {
+        if (DEBUG) {
+            Log.d(TAG, "Enabling");
+        }
+        mHandler.post(() -> {
+            mLevel = -1;
+            mRegistered = mSensorManager.registerListener(this, mSensor, mSamplingPeriodUs,
+                    mMaxReportLatencyUs, mHandler);
+            if (mRegistered) {
+                DozeStats.onSensorRegistered();
+            }
+        });
+    }
+
+    protected void disable() {
+        if (DEBUG) {
+            Log.d(TAG, "Disabling");
+        }
+        mHandler.post(() -> {
+            mSensorManager.unregisterListener(this, mSensor);
+            if (mRegistered) {
+                DozeStats.onSensorUnregistered();
+            }
+            mRegistered = false;
+        });
+    }
+
+    /**
+     * Unregisters and stops the handler thread, the sensor can not be enabled again.
+     */
+    protected void destroy() {
+        disable();
+        mHandlerThread.quitSafely();
+    }
+
+    protected void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "lightSensor=" + (mSensor != null ? mSensor.getName() : "missing")
+                + " registered=" + mRegistered + " lastLux=" + mLastLux
+                + " smoothedLux=" + mSmoothedLux + " level=" + mLevel);
+    }
+}
@@ -21,10 +21,14 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.Log;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+
+import org.lineageos.settings.R;
+
+import java.io.PrintWriter;
 
 public class AodSensor implements SensorEventListener {
     private static final boolean DEBUG = false;
@@ -33,28 +37,89 @@ public class AodSensor implements SensorEventListener {
     private SensorManager mSensorManager;
     private Sensor mSensor;
     private Context mContext;
-    private ExecutorService mExecutorService;
+    private final HandlerThread mHandlerThread;
+    private final Handler mHandler;
+    private final int mDwellMs;
+    private final int mMaxReportLatencyUs;
+
+    // Panel doze mode last written while registered, null if not known yet. Only
+    // touched on the handler thread, like mPendingMode.
+    private String mAppliedMode;
+    private String mPendingMode;
+    private final Runnable mApplyPendingMode = () -> applyDozeMode(mPendingMode);
+
+    // Written on the handler thread, read by dumps
+    private volatile boolean mRegistered;
+    private volatile long mRegisteredSince;
+    private volatile float mLastValue = -1;
+    private volatile int mEventCount;
+    private volatile int mSkippedCount;
 
     public AodSensor(Context context) {
         mContext = context;
         mSensorManager = mContext.getSystemService(SensorManager.class);
         mSensor = DozeUtils.getSensor(mSensorManager, "xiaomi.sensor.aod");
-        mExecutorService = Executors.newSingleThreadExecutor();
+        mDwellMs = context.getResources().getInteger(R.integer.config_dozeModeDwellMs);
+        mMaxReportLatencyUs = context.getResources().getInteger(
+                R.integer.config_aodSensorMaxReportLatencyUs);
+        // Events, registration and the dwell timer all run here, off the main looper
+        mHandlerThread = new HandlerThread(TAG);
+        mHandlerThread.start();
+        mHandler = new Handler(mHandlerThread.getLooper());
     }
 
-    private Future<?> submit(Runnable runnable) { return mExecutorService.submit(runnable); }
-
     @Override
     public void onSensorChanged(SensorEvent event) {
         if (DEBUG) {
             Log.d(TAG, "Got sensor event: " + event.values[0]);
         }
+        mLastValue = event.values[0];
+        mEventCount++;
+        DozeStats.recordSensorEvent();
 
+        final String mode;
         if (event.values[0] == 3 || event.values[0] == 5) {
-            DozeUtils.setDozeMode(DozeUtils.DOZE_MODE_LBM);
+            mode = DozeUtils.DOZE_MODE_LBM;
         } else if (event.values[0] == 4) {
-            DozeUtils.setDozeMode(DozeUtils.DOZE_MODE_HBM);
+            mode = DozeUtils.DOZE_MODE_HBM;
+        } else {
+            return;
+        }
+
+        if (mode.equals(mPendingMode)) {
+            // Still waiting for it to settle
+            mSkippedCount++;
+            DozeStats.recordWriteSkipped();
+            return;
+        }
+        mHandler.removeCallbacks(mApplyPendingMode);
+        mPendingMode = null;
+        if (mode.equals(mAppliedMode)) {
+            // Back to the current mode before the dwell time ran out, or a repeat
+            mSkippedCount++;
+            DozeStats.recordWriteSkipped();
+        } else if (mAppliedMode == null || mDwellMs <= 0) {
+            applyDozeMode(mode);
+        } else {
+            mPendingMode = mode;
+            mHandler.postDelayed(mApplyPendingMode, mDwellMs);
+        }
+    }
+
+    private void applyDozeMode(String mode) {
+        if (DEBUG) {
+            Log.d(TAG, "Switching doze mode to " + mode);
         }
+        mPendingMode = null;
+        mAppliedMode = mode;
+        DozeUtils.setDozeMode(mode);
+    }
+
+    private void resetDozeMode() {
+        mHandler.removeCallbacks(mApplyPendingMode);
+        mPendingMode = null;
+        // Anything may have written the node while we were not listening
+        mAppliedMode = null;
     }
 
     @Override
@@ -66,8 +131,14 @@ public class AodSensor implements SensorEventListener {
         if (DEBUG) {
             Log.d(TAG, "Enabling");
         }
-        submit(() -> {
-            mSensorManager.registerListener(this, mSensor, SensorManager.SENSOR_DELAY_NORMAL);
+        mHandler.post(() -> {
+            resetDozeMode();
+            mRegistered = mSensorManager.registerListener(this, mSensor,
+                    SensorManager.SENSOR_DELAY_NORMAL, mMaxReportLatencyUs, mHandler);
+            mRegisteredSince = SystemClock.elapsedRealtime();
+            if (mRegistered) {
+                DozeStats.onSensorRegistered();
+            }
         });
     }
 
@@ -75,6 +146,32 @@ public class AodSensor implements SensorEventListener {
         if (DEBUG) {
             Log.d(TAG, "Disabling");
         }
-        submit(() -> { mSensorManager.unregisterListener(this, mSensor); });
+        mHandler.post(() -> {
+            mSensorManager.unregisterListener(this, mSensor);
+            if (mRegistered) {
+                DozeStats.onSensorUnregistered();
+            }
+            mRegistered = false;
+            resetDozeMode();
+        });
+    }
+
+    /**
+     * Unregisters and stops the handler thread, the sensor can not be enabled again.
+     */
+    protected void destroy() {
+        disable();
+        mHandlerThread.quitSafely();
+    }
+
+    protected void dump(PrintWriter pw, String prefix) {
+        pw.print(prefix + "sensor=" + (mSensor != null ? mSensor.getStringType() : "missing")
+                + " registered=" + mRegistered);
+        if (mRegistered) {
+            pw.print(" for " + (SystemClock.elapsedRealtime() - mRegisteredSince) + "ms");
+        }
+        pw.println(" events=" + mEventCount + " skipped=" + mSkippedCount
+                + " lastValue=" + mLastValue + " dwellMs=" + mDwellMs
+                + " maxReportLatencyUs=" + mMaxReportLatencyUs);
     }
 }
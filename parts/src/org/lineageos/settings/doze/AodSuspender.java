@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.doze;
+
+import android.app.AlarmManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.preference.PreferenceManager;
+
+import java.io.PrintWriter;
+import java.util.Calendar;
+
+/**
+ * Turns always-on display off during the user's quiet hours and after the device has
+ * not moved for a while, and back on at the end of the schedule or on the next
+ * significant motion. Only inexact, non-wakeup alarms and the one-shot significant
+ * motion sensor are used, so none of this wakes the device by itself. All methods and
+ * callbacks run on the handler passed in.
+ */
+public class AodSuspender {
+    private static final boolean DEBUG = false;
+    private static final String TAG = "AodSuspender";
+
+    private static final String ALARM_SCHEDULE = "XiaomiParts:AodSchedule";
+    private static final String ALARM_NO_MOTION = "XiaomiParts:AodNoMotion";
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final AlarmManager mAlarmManager;
+    private final SensorManager mSensorManager;
+    private final Sensor mMotionSensor;
+    private final SharedPreferences mSharedPrefs;
+
+    private boolean mScreenOn = true;
+    private boolean mScheduleAlarmSet;
+    private boolean mNoMotionAlarmSet;
+    private boolean mMotionTriggerSet;
+
+    private final AlarmManager.OnAlarmListener mScheduleListener = () -> {
+        mScheduleAlarmSet = false;
+        updateSchedule();
+    };
+
+    private final AlarmManager.OnAlarmListener mNoMotionListener = () -> {
+        mNoMotionAlarmSet = false;
+        if (DEBUG) Log.d(TAG, "No motion timeout");
+        DozeUtils.suspendAlwaysOn(mContext, DozeUtils.AOD_SUSPEND_NO_MOTION);
+    };
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
+            (prefs, key) -> {
+                // Delivered on the main looper
+                if (DozeUtils.AOD_SCHEDULE_KEY.equals(key)
+                        || DozeUtils.AOD_SCHEDULE_START_KEY.equals(key)
+                        || DozeUtils.AOD_SCHEDULE_END_KEY.equals(key)) {
+                    mHandler.post(this::updateSchedule);
+                }
+            };
+
+    private final TriggerEventListener mMotionListener = new TriggerEventListener() {
+        @Override
+        public void onTrigger(TriggerEvent event) {
+            // Delivered on the main looper
+            mHandler.post(AodSuspender.this::onMotion);
+        }
+    };
+
+    public AodSuspender(Context context, Handler handler) {
+        mContext = context;
+        mHandler = handler;
+        mAlarmManager = context.getSystemService(AlarmManager.class);
+        mSensorManager = context.getSystemService(SensorManager.class);
+        mMotionSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
+        mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+    }
+
+    /**
+     * Applies the schedule and keeps following it until {@link #stop()}.
+     */
+    protected void start() {
+        mSharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
+        updateSchedule();
+    }
+
+    protected void stop() {
+        mSharedPrefs.unregisterOnSharedPreferenceChangeListener(mPrefListener);
+        cancelScheduleAlarm();
+        onScreenOn();
+    }
+
+    protected void onScreenOn() {
+        mScreenOn = true;
+        cancelNoMotion();
+        // Someone is using the device
+        DozeUtils.resumeAlwaysOn(mContext, DozeUtils.AOD_SUSPEND_NO_MOTION);
+    }
+
+    protected void onScreenOff() {
+        mScreenOn = false;
+        armNoMotion();
+    }
+
+    private void onMotion() {
+        mMotionTriggerSet = false;
+        if (mScreenOn) {
+            // Posted before the screen came on, onScreenOn() already took care of it
+            return;
+        }
+        if (DEBUG) Log.d(TAG, "Significant motion");
+        DozeUtils.resumeAlwaysOn(mContext, DozeUtils.AOD_SUSPEND_NO_MOTION);
+        armNoMotion();
+    }
+
+    private void armNoMotion() {
+        cancelNoMotion();
+        final int timeoutMinutes = DozeUtils.getNoMotionTimeoutMinutes(mContext);
+        if (timeoutMinutes <= 0 || mMotionSensor == null) {
+            return;
+        }
+        mMotionTriggerSet = mSensorManager.requestTriggerSensor(mMotionListener, mMotionSensor);
+        if (!mMotionTriggerSet) {
+            Log.w(TAG, "Could not arm significant motion");
+            return;
+        }
+        mAlarmManager.set(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + timeoutMinutes * 60000L,
+                ALARM_NO_MOTION, mNoMotionListener, mHandler);
+        mNoMotionAlarmSet = true;
+    }
+
+    private void cancelNoMotion() {
+        if (mMotionTriggerSet) {
+            mSensorManager.cancelTriggerSensor(mMotionListener, mMotionSensor);
+            mMotionTriggerSet = false;
+        }
+        if (mNoMotionAlarmSet) {
+            mAlarmManager.cancel(mNoMotionListener);
+            mNoMotionAlarmSet = false;
+        }
+    }
+
+    private void updateSchedule() {
+        cancelScheduleAlarm();
+        if (!DozeUtils.isAlwaysOnScheduleEnabled(mContext)) {
+            DozeUtils.resumeAlwaysOn(mContext, DozeUtils.AOD_SUSPEND_SCHEDULE);
+            return;
+        }
+
+        final int start = DozeUtils.getAlwaysOnScheduleStart(mContext);
+        final int end = DozeUtils.getAlwaysOnScheduleEnd(mContext);
+        final Calendar calendar = Calendar.getInstance();
+        final int now = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+        // The quiet hours may wrap around midnight
+        final boolean inSchedule = start <= end
+                ? now >= start && now < end
+                : now >= start || now < end;
+        if (inSchedule) {
+            DozeUtils.suspendAlwaysOn(mContext, DozeUtils.AOD_SUSPEND_SCHEDULE);
+        } else {
+            DozeUtils.resumeAlwaysOn(mContext, DozeUtils.AOD_SUSPEND_SCHEDULE);
+        }
+
+        // Wake up again at the next boundary
+        final int next = inSchedule ? end : start;
+        calendar.set(Calendar.HOUR_OF_DAY, next / 60);
+        calendar.set(Calendar.MINUTE, next % 60);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (next <= now) {
+            calendar.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        mAlarmManager.set(AlarmManager.RTC, calendar.getTimeInMillis(), ALARM_SCHEDULE,
+                mScheduleListener, mHandler);
+        mScheduleAlarmSet = true;
+    }
+
+    private void cancelScheduleAlarm() {
+        if (mScheduleAlarmSet) {
+            mAlarmManager.cancel(mScheduleListener);
+            mScheduleAlarmSet = false;
+        }
+    }
+
+    protected void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "aodSuspended=" + DozeUtils.getAlwaysOnSuspendReasons(mContext)
+                + " scheduleAlarm=" + mScheduleAlarmSet + " noMotionAlarm=" + mNoMotionAlarmSet
+                + " motionTrigger=" + mMotionTriggerSet);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.doze;
+
+import android.content.Context;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.preference.PreferenceManager;
+
+import org.lineageos.settings.policy.PolicyController;
+
+import java.io.PrintWriter;
+
+public class DozeController implements PolicyController, PocketDetector.Callback {
+    private static final String TAG = "DozeController";
+    private static final boolean DEBUG = false;
+
+    private Context mContext;
+    private AodSensor mAodSensor;
+    private AodLightSensor mAodLightSensor;
+    private PocketDetector mPocketDetector;
+    private AodSuspender mAodSuspender;
+    private PulseGestures mPulseGestures;
+    private boolean mPocketed;
+
+    @Override
+    public String getName() {
+        return "doze";
+    }
+
+    @Override
+    public boolean isEnabled(Context context) {
+        // Keep running while always-on display is suspended so it gets turned back on
+        return DozeUtils.isDozeEnabled(context)
+                && (DozeUtils.isAlwaysOnEnabled(context) || DozeUtils.isAlwaysOnSuspended(context)
+                        || DozeUtils.sensorsEnabled(context)
+                        || DozeUtils.isPulseGestureEnabled(context));
+    }
+
+    @Override
+    public void onStart(Context context, Handler handler) {
+        mContext = context;
+        mAodSensor = new AodSensor(context);
+        mPocketDetector = new PocketDetector(context, handler, this);
+        mAodSuspender = new AodSuspender(context, handler);
+        mAodSuspender.start();
+        mPulseGestures = new PulseGestures(context, handler);
+    }
+
+    @Override
+    public void onStop() {
+        DozeStats.endSession();
+        mAodSuspender.stop();
+        mAodSuspender = null;
+        mPulseGestures.disable();
+        mPulseGestures = null;
+        mPocketDetector.disable();
+        mPocketDetector = null;
+        mAodSensor.destroy();
+        mAodSensor = null;
+        if (mAodLightSensor != null) {
+            mAodLightSensor.destroy();
+            mAodLightSensor = null;
+        }
+    }
+
+    @Override
+    public void onScreenStateChanged(boolean screenOn) {
+        if (screenOn) {
+            onDisplayOn();
+        } else {
+            onDisplayOff();
+        }
+    }
+
+    @Override
+    public void onPocketStateChanged(boolean pocketed) {
+        mPocketed = pocketed;
+        if (!pocketed) {
+            mPulseGestures.onPocketExit();
+        }
+        if (!DozeUtils.isAlwaysOnEnabled(mContext)) {
+            // Only watched for the pocket gesture, the panel is not on
+            return;
+        }
+        if (pocketed) {
+            // Nobody can see the panel, keep it as dim as possible and stop sampling
+            disableBrightnessSensors();
+            DozeUtils.setDozeMode(DozeUtils.DOZE_MODE_LBM);
+        } else {
+            applyDozeBrightness();
+        }
+    }
+
+    @Override
+    public void dump(PrintWriter pw) {
+        pw.println("  autoBrightness=" + DozeUtils.isDozeAutoBrightnessEnabled(mContext)
+                + " luxBrightness=" + DozeUtils.isDozeLuxBrightnessEnabled(mContext)
+                + " alwaysOn=" + DozeUtils.isAlwaysOnEnabled(mContext)
+                + " pocketed=" + mPocketed);
+        if (mAodSensor != null) {
+            mAodSensor.dump(pw, "  ");
+        }
+        if (mAodLightSensor != null) {
+            mAodLightSensor.dump(pw, "  ");
+        }
+        DozeStats.dump(pw, "  ");
+        mPocketDetector.dump(pw, "  ");
+        mAodSuspender.dump(pw, "  ");
+        mPulseGestures.dump(pw, "  ");
+        DozeUtils.dump(pw, "  ");
+    }
+
+    private void onDisplayOn() {
+        if (DEBUG)
+            Log.d(TAG, "Display on");
+        DozeStats.endSession();
+        mPocketed = false;
+        mPocketDetector.disable();
+        mAodSuspender.onScreenOn();
+        mPulseGestures.disable();
+        // The brightness mode may have changed while dozing, disable whatever runs
+        disableBrightnessSensors();
+    }
+
+    private void onDisplayOff() {
+        if (DEBUG)
+            Log.d(TAG, "Display off");
+        DozeStats.startSession();
+        if (DozeUtils.isAlwaysOnEnabled(mContext)
+                || DozeUtils.isPocketGestureEnabled(mContext)) {
+            mPocketDetector.enable();
+        }
+        mAodSuspender.onScreenOff();
+        mPulseGestures.enable();
+        enableBrightnessSensors();
+    }
+
+    private void enableBrightnessSensors() {
+        if (DozeUtils.isDozeAutoBrightnessEnabled(mContext)) {
+            mAodSensor.enable();
+        } else if (DozeUtils.isDozeLuxBrightnessEnabled(mContext)) {
+            if (mAodLightSensor == null) {
+                mAodLightSensor = new AodLightSensor(mContext);
+            }
+            mAodLightSensor.enable();
+        }
+    }
+
+    private void disableBrightnessSensors() {
+        mAodSensor.disable();
+        if (mAodLightSensor != null) {
+            mAodLightSensor.disable();
+        }
+    }
+
+    /**
+     * Brings the doze brightness back to the user's choice after being pocketed.
+     */
+    private void applyDozeBrightness() {
+        final String brightness = PreferenceManager.getDefaultSharedPreferences(mContext)
+                .getString(DozeUtils.DOZE_BRIGHTNESS_KEY, DozeUtils.DOZE_BRIGHTNESS_LBM);
+        if (DozeUtils.isSensorDrivenBrightness(brightness)) {
+            enableBrightnessSensors();
+        } else {
+            DozeUtils.setDozeMode(brightness);
+        }
+    }
+}
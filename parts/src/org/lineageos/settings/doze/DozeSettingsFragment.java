@@ -21,11 +21,16 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.DialogFragment;
+import android.app.TimePickerDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.SharedPreferences;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
 import android.os.Bundle;
 import android.os.Handler;
+import android.text.format.DateFormat;
+import android.text.format.DateUtils;
 import android.widget.CompoundButton;
 import android.widget.CompoundButton.OnCheckedChangeListener;
 import androidx.preference.ListPreference;
@@ -40,12 +45,24 @@ import com.android.settingslib.widget.MainSwitchPreference;
 import org.lineageos.settings.R;
 import org.lineageos.settings.utils.FileUtils;
 
+import java.util.Calendar;
+import java.util.function.IntConsumer;
+
 public class DozeSettingsFragment extends PreferenceFragment
         implements OnPreferenceChangeListener, OnCheckedChangeListener {
     private MainSwitchPreference mSwitchBar;
 
     private SwitchPreference mAlwaysOnDisplayPreference;
     private ListPreference mDozeBrightnessPreference;
+    private SwitchPreference mAodSchedulePreference;
+    private Preference mAodScheduleStartPreference;
+    private Preference mAodScheduleEndPreference;
+    private ListPreference mAodNoMotionPreference;
+    private PreferenceCategory mPulseGesturesCategory;
+    private Preference mDozeStatsPreference;
+
+    private static final String KEY_PULSE_GESTURES = "pulse_gestures";
+    private static final String KEY_DOZE_STATS = "doze_stats";
 
     private Handler mHandler = new Handler();
 
@@ -75,10 +92,45 @@ public class DozeSettingsFragment extends PreferenceFragment
                 dozeEnabled && DozeUtils.isAlwaysOnEnabled(getActivity()));
         mDozeBrightnessPreference.setOnPreferenceChangeListener(this);
 
+        mAodSchedulePreference = (SwitchPreference) findPreference(DozeUtils.AOD_SCHEDULE_KEY);
+        mAodSchedulePreference.setEnabled(dozeEnabled);
+        mAodSchedulePreference.setOnPreferenceChangeListener(this);
+
+        mAodScheduleStartPreference = findPreference(DozeUtils.AOD_SCHEDULE_START_KEY);
+        mAodScheduleStartPreference.setOnPreferenceClickListener(preference -> {
+            showTimePicker(DozeUtils.getAlwaysOnScheduleStart(getActivity()),
+                    minutes -> DozeUtils.setAlwaysOnScheduleStart(getActivity(), minutes));
+            return true;
+        });
+        mAodScheduleEndPreference = findPreference(DozeUtils.AOD_SCHEDULE_END_KEY);
+        mAodScheduleEndPreference.setOnPreferenceClickListener(preference -> {
+            showTimePicker(DozeUtils.getAlwaysOnScheduleEnd(getActivity()),
+                    minutes -> DozeUtils.setAlwaysOnScheduleEnd(getActivity(), minutes));
+            return true;
+        });
+        updateScheduleSummaries();
+
+        mAodNoMotionPreference =
+                (ListPreference) findPreference(DozeUtils.AOD_NO_MOTION_TIMEOUT_KEY);
+        mAodNoMotionPreference.setEnabled(dozeEnabled);
+        mAodNoMotionPreference.setOnPreferenceChangeListener(this);
+
+        mPulseGesturesCategory = (PreferenceCategory) findPreference(KEY_PULSE_GESTURES);
+        mPulseGesturesCategory.setEnabled(dozeEnabled);
+        setupGesture(DozeUtils.GESTURE_PICK_UP_KEY, Sensor.TYPE_PICK_UP_GESTURE);
+        setupGesture(DozeUtils.GESTURE_TILT_KEY, Sensor.TYPE_TILT_DETECTOR);
+        setupGesture(DozeUtils.GESTURE_POCKET_KEY, Sensor.TYPE_PROXIMITY);
+
+        mDozeStatsPreference = findPreference(KEY_DOZE_STATS);
+
         // Hide AOD and doze brightness if not supported and set all its dependents otherwise
         if (!DozeUtils.alwaysOnDisplayAvailable(getActivity())) {
             getPreferenceScreen().removePreference(mAlwaysOnDisplayPreference);
             getPreferenceScreen().removePreference(mDozeBrightnessPreference);
+            getPreferenceScreen().removePreference(mAodSchedulePreference);
+            getPreferenceScreen().removePreference(mAodScheduleStartPreference);
+            getPreferenceScreen().removePreference(mAodScheduleEndPreference);
+            getPreferenceScreen().removePreference(mAodNoMotionPreference);
         } else {
             if (!FileUtils.isFileWritable(DozeUtils.DOZE_MODE_PATH)) {
                 getPreferenceScreen().removePreference(mDozeBrightnessPreference);
@@ -88,9 +140,17 @@ public class DozeSettingsFragment extends PreferenceFragment
         }
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        updateDozeStats();
+    }
+
     @Override
     public boolean onPreferenceChange(Preference preference, Object newValue) {
         if (DozeUtils.ALWAYS_ON_DISPLAY.equals(preference.getKey())) {
+            // The user's choice wins over any schedule or no motion suspension
+            DozeUtils.clearAlwaysOnSuspension(getActivity());
             DozeUtils.enableAlwaysOn(getActivity(), (Boolean) newValue);
             if (!(Boolean) newValue) {
                 mDozeBrightnessPreference.setValue(DozeUtils.DOZE_BRIGHTNESS_LBM);
@@ -98,7 +158,7 @@ public class DozeSettingsFragment extends PreferenceFragment
             }
             mDozeBrightnessPreference.setEnabled((Boolean) newValue);
         } else if (DozeUtils.DOZE_BRIGHTNESS_KEY.equals(preference.getKey())) {
-            if (!DozeUtils.DOZE_BRIGHTNESS_AUTO.equals((String) newValue)) {
+            if (!DozeUtils.isSensorDrivenBrightness((String) newValue)) {
                 DozeUtils.setDozeMode((String) newValue);
             }
         }
@@ -119,6 +179,7 @@ public class DozeSettingsFragment extends PreferenceFragment
         mSwitchBar.setChecked(isChecked);
 
         if (!isChecked) {
+            DozeUtils.clearAlwaysOnSuspension(getActivity());
             DozeUtils.enableAlwaysOn(getActivity(), false);
             mAlwaysOnDisplayPreference.setChecked(false);
             mDozeBrightnessPreference.setValue(DozeUtils.DOZE_BRIGHTNESS_LBM);
@@ -127,6 +188,56 @@ public class DozeSettingsFragment extends PreferenceFragment
         mAlwaysOnDisplayPreference.setEnabled(isChecked);
         mDozeBrightnessPreference.setEnabled(
                 isChecked && DozeUtils.isAlwaysOnEnabled(getActivity()));
+        mAodSchedulePreference.setEnabled(isChecked);
+        mAodNoMotionPreference.setEnabled(isChecked);
+        mPulseGesturesCategory.setEnabled(isChecked);
+    }
+
+    private void updateDozeStats() {
+        final DozeStats.Counters night = new DozeStats.Counters();
+        DozeStats.getNight(night);
+        if (night.sessions == 0) {
+            mDozeStatsPreference.setSummary(R.string.doze_stats_empty);
+            return;
+        }
+        final long modeMs = night.hbmMs + night.lbmMs;
+        mDozeStatsPreference.setSummary(getString(R.string.doze_stats_summary,
+                DateUtils.formatElapsedTime(night.durationMs / 1000),
+                modeMs > 0 ? (int) (night.hbmMs * 100 / modeMs) : 0,
+                night.pulses, night.writesIssued,
+                night.writesIssued + night.writesSkipped));
+    }
+
+    private void setupGesture(String key, int sensorType) {
+        final Preference preference = findPreference(key);
+        final SensorManager sensorManager = getActivity().getSystemService(SensorManager.class);
+        if (sensorManager.getDefaultSensor(sensorType) == null) {
+            mPulseGesturesCategory.removePreference(preference);
+        } else {
+            preference.setOnPreferenceChangeListener(this);
+        }
+    }
+
+    private void updateScheduleSummaries() {
+        final String start = formatMinutes(DozeUtils.getAlwaysOnScheduleStart(getActivity()));
+        final String end = formatMinutes(DozeUtils.getAlwaysOnScheduleEnd(getActivity()));
+        mAodSchedulePreference.setSummary(getString(R.string.aod_schedule_summary, start, end));
+        mAodScheduleStartPreference.setSummary(start);
+        mAodScheduleEndPreference.setSummary(end);
+    }
+
+    private void showTimePicker(int minutes, IntConsumer onSet) {
+        new TimePickerDialog(getActivity(), (view, hourOfDay, minute) -> {
+            onSet.accept(hourOfDay * 60 + minute);
+            updateScheduleSummaries();
+        }, minutes / 60, minutes % 60, DateFormat.is24HourFormat(getActivity())).show();
+    }
+
+    private String formatMinutes(int minutes) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, minutes / 60);
+        calendar.set(Calendar.MINUTE, minutes % 60);
+        return DateFormat.getTimeFormat(getActivity()).format(calendar.getTime());
     }
 
     private void showHelp() {
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.doze;
+
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.Calendar;
+
+/**
+ * Counts what the doze package does while the screen is off. Counters are kept for the
+ * current screen off session and summed up per night, a night running from noon to
+ * noon. Recording only touches primitive fields, so it can be done for every event.
+ */
+public final class DozeStats {
+
+    // Nights roll over at noon, so a session at 23:00 and one at 05:00 add up
+    private static final int NIGHT_OFFSET_HOURS = -12;
+
+    protected static final class Counters {
+        int sessions;
+        long durationMs;
+        long sensorEvents;
+        long writesIssued;
+        long writesSkipped;
+        long writesFailed;
+        long hbmMs;
+        long lbmMs;
+        long sensorMs;
+        long pulses;
+
+        void add(Counters other) {
+            sessions += other.sessions;
+            durationMs += other.durationMs;
+            sensorEvents += other.sensorEvents;
+            writesIssued += other.writesIssued;
+            writesSkipped += other.writesSkipped;
+            writesFailed += other.writesFailed;
+            hbmMs += other.hbmMs;
+            lbmMs += other.lbmMs;
+            sensorMs += other.sensorMs;
+            pulses += other.pulses;
+        }
+
+        void reset() {
+            sessions = 0;
+            durationMs = 0;
+            sensorEvents = 0;
+            writesIssued = 0;
+            writesSkipped = 0;
+            writesFailed = 0;
+            hbmMs = 0;
+            lbmMs = 0;
+            sensorMs = 0;
+            pulses = 0;
+        }
+
+        void copyFrom(Counters other) {
+            reset();
+            add(other);
+        }
+
+        void dump(PrintWriter pw, String prefix) {
+            pw.println(prefix + "sessions=" + sessions + " durationMs=" + durationMs
+                    + " sensorEvents=" + sensorEvents + " writesIssued=" + writesIssued
+                    + " writesSkipped=" + writesSkipped + " writesFailed=" + writesFailed
+                    + " hbmMs=" + hbmMs + " lbmMs=" + lbmMs + " sensorMs=" + sensorMs
+                    + " pulses=" + pulses);
+        }
+    }
+
+    private static final Object sLock = new Object();
+
+    // Guarded by sLock
+    private static final Counters sSession = new Counters();
+    private static final Counters sNight = new Counters();
+    private static final Counters sLastNight = new Counters();
+    private static int sNightKey = -1;
+    private static boolean sInSession;
+    private static long sSessionStartMs;
+    private static String sDozeMode;
+    private static long sDozeModeSinceMs;
+    private static int sActiveSensors;
+    private static long sSensorsSinceMs;
+
+    private DozeStats() {
+        // This class is not supposed to be instantiated
+    }
+
+    /**
+     * Called by the doze controller when the screen turns off.
+     */
+    protected static void startSession() {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.HOUR_OF_DAY, NIGHT_OFFSET_HOURS);
+        final int nightKey = calendar.get(Calendar.YEAR) * 1000
+                + calendar.get(Calendar.DAY_OF_YEAR);
+        final long now = SystemClock.elapsedRealtime();
+        synchronized (sLock) {
+            if (sInSession) {
+                return;
+            }
+            if (nightKey != sNightKey) {
+                if (sNight.sessions > 0) {
+                    sLastNight.copyFrom(sNight);
+                }
+                sNight.reset();
+                sNightKey = nightKey;
+            }
+            sSession.reset();
+            sSession.sessions = 1;
+            sInSession = true;
+            sSessionStartMs = now;
+            sDozeModeSinceMs = now;
+            sSensorsSinceMs = now;
+        }
+    }
+
+    /**
+     * Called by the doze controller when the screen turns on.
+     */
+    protected static void endSession() {
+        final long now = SystemClock.elapsedRealtime();
+        synchronized (sLock) {
+            if (!sInSession) {
+                return;
+            }
+            accountDozeMode(now);
+            accountSensors(now);
+            sSession.durationMs = now - sSessionStartMs;
+            sNight.add(sSession);
+            sInSession = false;
+        }
+    }
+
+    protected static void recordSensorEvent() {
+        synchronized (sLock) {
+            if (sInSession) {
+                sSession.sensorEvents++;
+            }
+        }
+    }
+
+    protected static void recordWriteIssued() {
+        synchronized (sLock) {
+            if (sInSession) {
+                sSession.writesIssued++;
+            }
+        }
+    }
+
+    /**
+     * Counts a sensor reading that did not lead to a doze mode write.
+     */
+    protected static void recordWriteSkipped() {
+        synchronized (sLock) {
+            if (sInSession) {
+                sSession.writesSkipped++;
+            }
+        }
+    }
+
+    protected static void recordDozeMode(String mode, boolean success) {
+        final long now = SystemClock.elapsedRealtime();
+        synchronized (sLock) {
+            if (!success) {
+                if (sInSession) {
+                    sSession.writesFailed++;
+                }
+                return;
+            }
+            accountDozeMode(now);
+            sDozeMode = mode;
+        }
+    }
+
+    protected static void recordPulse() {
+        synchronized (sLock) {
+            if (sInSession) {
+                sSession.pulses++;
+            }
+        }
+    }
+
+    protected static void onSensorRegistered() {
+        final long now = SystemClock.elapsedRealtime();
+        synchronized (sLock) {
+            accountSensors(now);
+            sActiveSensors++;
+        }
+    }
+
+    protected static void onSensorUnregistered() {
+        final long now = SystemClock.elapsedRealtime();
+        synchronized (sLock) {
+            accountSensors(now);
+            if (sActiveSensors > 0) {
+                sActiveSensors--;
+            }
+        }
+    }
+
+    private static void accountDozeMode(long now) {
+        if (sInSession) {
+            if (DozeUtils.DOZE_MODE_HBM.equals(sDozeMode)) {
+                sSession.hbmMs += now - sDozeModeSinceMs;
+            } else if (DozeUtils.DOZE_MODE_LBM.equals(sDozeMode)) {
+                sSession.lbmMs += now - sDozeModeSinceMs;
+            }
+        }
+        sDozeModeSinceMs = now;
+    }
+
+    private static void accountSensors(long now) {
+        if (sInSession) {
+            sSession.sensorMs += sActiveSensors * (now - sSensorsSinceMs);
+        }
+        sSensorsSinceMs = now;
+    }
+
+    /**
+     * Copies the counters of the current night, or of the previous one if nothing was
+     * recorded yet tonight.
+     */
+    protected static void getNight(Counters out) {
+        synchronized (sLock) {
+            out.copyFrom(sNight.sessions > 0 ? sNight : sLastNight);
+        }
+    }
+
+    protected static void dump(PrintWriter pw, String prefix) {
+        synchronized (sLock) {
+            pw.println(prefix + "stats inSession=" + sInSession + " dozeMode=" + sDozeMode
+                    + " activeSensors=" + sActiveSensors);
+            if (sInSession) {
+                final long now = SystemClock.elapsedRealtime();
+                accountDozeMode(now);
+                accountSensors(now);
+                sSession.durationMs = now - sSessionStartMs;
+            }
+            sSession.dump(pw, prefix + "  session ");
+            sNight.dump(pw, prefix + "  night ");
+            sLastNight.dump(pw, prefix + "  lastNight ");
+        }
+    }
+}
@@ -35,7 +35,13 @@ import androidx.preference.ListPreference;
 import androidx.preference.PreferenceManager;
 
 import org.lineageos.settings.R;
-import org.lineageos.settings.utils.FileUtils;
+import org.lineageos.settings.policy.PolicyUtils;
+import org.lineageos.settings.utils.SysfsWriter;
+import org.lineageos.settings.utils.TraceUtils;
+import org.lineageos.settings.utils.TransitionLog;
+
+import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
 
 public final class DozeUtils {
     private static final String TAG = "DozeUtils";
@@ -55,39 +61,47 @@ public final class DozeUtils {
     protected static final String DOZE_BRIGHTNESS_LBM = "0";
     protected static final String DOZE_BRIGHTNESS_HBM = "1";
     protected static final String DOZE_BRIGHTNESS_AUTO = "2";
+    protected static final String DOZE_BRIGHTNESS_LUX = "3";
+
+    protected static final String GESTURE_PICK_UP_KEY = "gesture_pick_up";
+    protected static final String GESTURE_TILT_KEY = "gesture_tilt";
+    protected static final String GESTURE_POCKET_KEY = "gesture_pocket";
+
+    protected static final String AOD_SCHEDULE_KEY = "aod_schedule";
+    protected static final String AOD_SCHEDULE_START_KEY = "aod_schedule_start";
+    protected static final String AOD_SCHEDULE_END_KEY = "aod_schedule_end";
+    protected static final String AOD_NO_MOTION_TIMEOUT_KEY = "aod_no_motion_timeout";
+    private static final String AOD_SUSPEND_REASONS_KEY = "aod_suspend_reasons";
+
+    // Why always-on display is currently turned off on the user's behalf
+    protected static final int AOD_SUSPEND_SCHEDULE = 1 << 0;
+    protected static final int AOD_SUSPEND_NO_MOTION = 1 << 1;
+
+    private static final TransitionLog sLog = new TransitionLog(32);
 
     public static void onBootCompleted(Context context) {
-        checkDozeService(context);
         restoreDozeModes(context);
     }
-    public static void startService(Context context) {
-        if (DEBUG)
-            Log.d(TAG, "Starting service");
-        context.startServiceAsUser(new Intent(context, DozeService.class), UserHandle.CURRENT);
-    }
-
-    protected static void stopService(Context context) {
-        if (DEBUG)
-            Log.d(TAG, "Stopping service");
-        context.stopServiceAsUser(new Intent(context, DozeService.class), UserHandle.CURRENT);
-    }
 
     public static void checkDozeService(Context context) {
-        if (isDozeEnabled(context)
-                && (isAlwaysOnEnabled(context) || sensorsEnabled(context))) {
-            startService(context);
-        } else {
-            stopService(context);
-        }
+        // The doze controller is attached by the policy host when doze needs it
+        PolicyUtils.checkService(context);
     }
 
     private static void restoreDozeModes(Context context) {
-        if (isAlwaysOnEnabled(context) && !isDozeAutoBrightnessEnabled(context)) {
-            setDozeMode(PreferenceManager.getDefaultSharedPreferences(context).getString(
-                    DOZE_BRIGHTNESS_KEY, String.valueOf(DOZE_BRIGHTNESS_LBM)));
+        final String brightness = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(DOZE_BRIGHTNESS_KEY, DOZE_BRIGHTNESS_LBM);
+        if (isAlwaysOnEnabled(context) && !isSensorDrivenBrightness(brightness)) {
+            setDozeMode(brightness);
         }
     }
 
+    protected static void launchDozePulse(Context context) {
+        if (DEBUG) Log.d(TAG, "Launch doze pulse");
+        context.sendBroadcastAsUser(new Intent(DOZE_INTENT),
+                new UserHandle(UserHandle.USER_CURRENT));
+    }
+
     protected static boolean enableDoze(Context context, boolean enable) {
         return Settings.Secure.putInt(context.getContentResolver(), DOZE_ENABLED, enable ? 1 : 0);
     }
@@ -111,12 +125,133 @@ public final class DozeUtils {
                 != 0;
     }
 
+    /**
+     * Turns always-on display off for the given reason, if it is on or already
+     * suspended for another one.
+     */
+    protected static void suspendAlwaysOn(Context context, int reason) {
+        final int reasons = getAlwaysOnSuspendReasons(context);
+        if ((reasons & reason) != 0) {
+            return;
+        }
+        if (reasons == 0) {
+            if (!isAlwaysOnEnabled(context)) {
+                // Turned off by the user, nothing to suspend or restore later
+                return;
+            }
+            if (DEBUG) Log.d(TAG, "Suspending always-on display");
+            enableAlwaysOn(context, false);
+        }
+        setAlwaysOnSuspendReasons(context, reasons | reason);
+    }
+
+    /**
+     * Drops the given suspend reason and turns always-on display back on once no
+     * reason is left.
+     */
+    protected static void resumeAlwaysOn(Context context, int reason) {
+        final int reasons = getAlwaysOnSuspendReasons(context);
+        if ((reasons & reason) == 0) {
+            return;
+        }
+        setAlwaysOnSuspendReasons(context, reasons & ~reason);
+        if ((reasons & ~reason) == 0) {
+            if (DEBUG) Log.d(TAG, "Resuming always-on display");
+            enableAlwaysOn(context, true);
+        }
+    }
+
+    /**
+     * Forgets about any suspension without touching the setting, used when the user
+     * changes always-on display themselves.
+     */
+    protected static void clearAlwaysOnSuspension(Context context) {
+        setAlwaysOnSuspendReasons(context, 0);
+    }
+
+    protected static boolean isAlwaysOnSuspended(Context context) {
+        return getAlwaysOnSuspendReasons(context) != 0;
+    }
+
+    protected static int getAlwaysOnSuspendReasons(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getInt(AOD_SUSPEND_REASONS_KEY, 0);
+    }
+
+    private static void setAlwaysOnSuspendReasons(Context context, int reasons) {
+        // Committed, so a restarted process knows what to restore
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putInt(AOD_SUSPEND_REASONS_KEY, reasons).commit();
+    }
+
+    protected static boolean isAlwaysOnScheduleEnabled(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(AOD_SCHEDULE_KEY, false);
+    }
+
+    /**
+     * @return the start of the quiet hours in minutes after midnight
+     */
+    protected static int getAlwaysOnScheduleStart(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getInt(
+                AOD_SCHEDULE_START_KEY,
+                context.getResources().getInteger(R.integer.config_aodScheduleStartMinutes));
+    }
+
+    /**
+     * @return the end of the quiet hours in minutes after midnight
+     */
+    protected static int getAlwaysOnScheduleEnd(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getInt(
+                AOD_SCHEDULE_END_KEY,
+                context.getResources().getInteger(R.integer.config_aodScheduleEndMinutes));
+    }
+
+    protected static void setAlwaysOnScheduleStart(Context context, int minutes) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putInt(AOD_SCHEDULE_START_KEY, minutes).apply();
+    }
+
+    protected static void setAlwaysOnScheduleEnd(Context context, int minutes) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putInt(AOD_SCHEDULE_END_KEY, minutes).apply();
+    }
+
+    protected static int getNoMotionTimeoutMinutes(Context context) {
+        try {
+            return Integer.parseInt(PreferenceManager.getDefaultSharedPreferences(context)
+                    .getString(AOD_NO_MOTION_TIMEOUT_KEY, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     protected static boolean alwaysOnDisplayAvailable(Context context) {
         return new AmbientDisplayConfiguration(context).alwaysOnAvailable();
     }
 
-    protected static boolean setDozeMode(String value) {
-        return FileUtils.writeLine(DOZE_MODE_PATH, value);
+    /**
+     * Queues the given panel doze mode, the write happens off the calling thread.
+     *
+     * @return a future completed with whether the write succeeded
+     */
+    protected static CompletableFuture<Boolean> setDozeMode(String value) {
+        DozeStats.recordWriteIssued();
+        return SysfsWriter.writeLineResult(DOZE_MODE_PATH, value).thenApply(result -> {
+            // Only the caller whose value reached the panel records the write
+            if (result.value.equals(value)) {
+                sLog.recordWrite(null, value, result.success);
+                DozeStats.recordDozeMode(value, result.success);
+                if (result.success) {
+                    TraceUtils.setCounter(TraceUtils.COUNTER_DOZE_MODE, value);
+                }
+            }
+            return result.success;
+        });
+    }
+
+    protected static void dump(PrintWriter pw, String prefix) {
+        sLog.dump(pw, prefix);
     }
 
     protected static boolean isDozeAutoBrightnessEnabled(Context context) {
@@ -125,8 +260,43 @@ public final class DozeUtils {
                 .equals(DOZE_BRIGHTNESS_AUTO);
     }
 
+    protected static boolean isDozeLuxBrightnessEnabled(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(DOZE_BRIGHTNESS_KEY, DOZE_BRIGHTNESS_LBM)
+                .equals(DOZE_BRIGHTNESS_LUX);
+    }
+
+    /**
+     * @return whether the given doze brightness setting is driven by a sensor rather
+     *         than being a fixed doze mode
+     */
+    protected static boolean isSensorDrivenBrightness(String value) {
+        return DOZE_BRIGHTNESS_AUTO.equals(value) || DOZE_BRIGHTNESS_LUX.equals(value);
+    }
+
+    protected static boolean isPickUpGestureEnabled(Context context) {
+        return isGestureEnabled(context, GESTURE_PICK_UP_KEY);
+    }
+
+    protected static boolean isTiltGestureEnabled(Context context) {
+        return isGestureEnabled(context, GESTURE_TILT_KEY);
+    }
+
+    protected static boolean isPocketGestureEnabled(Context context) {
+        return isGestureEnabled(context, GESTURE_POCKET_KEY);
+    }
+
+    protected static boolean isPulseGestureEnabled(Context context) {
+        return isPickUpGestureEnabled(context) || isTiltGestureEnabled(context)
+                || isPocketGestureEnabled(context);
+    }
+
+    private static boolean isGestureEnabled(Context context, String gesture) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(gesture, false);
+    }
+
     public static boolean sensorsEnabled(Context context) {
-        return isDozeAutoBrightnessEnabled(context);
+        return isDozeAutoBrightnessEnabled(context) || isDozeLuxBrightnessEnabled(context);
     }
 
     protected static Sensor getSensor(SensorManager sm, String type) {
@@ -148,6 +318,7 @@ public final class DozeUtils {
                 preference.setIcon(R.drawable.ic_doze_brightness_high);
                 break;
             case DozeUtils.DOZE_BRIGHTNESS_AUTO:
+            case DozeUtils.DOZE_BRIGHTNESS_LUX:
                 preference.setIcon(R.drawable.ic_doze_brightness_auto);
                 break;
         }
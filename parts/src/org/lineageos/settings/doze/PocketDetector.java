@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.doze;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.util.Log;
+
+import org.lineageos.settings.R;
+
+import java.io.PrintWriter;
+
+/**
+ * Reports whether the device is in a pocket or lying face down. Covered or face down
+ * has to last config_dozePocketDelayMs before it is reported, uncovering is reported
+ * right away. Events and callbacks are delivered on the handler passed in.
+ */
+public class PocketDetector implements SensorEventListener {
+    private static final boolean DEBUG = false;
+    private static final String TAG = "PocketDetector";
+
+    // Gravity along z pointing out of the screen, in m/s^2
+    private static final float FACE_DOWN_Z = -8f;
+
+    public interface Callback {
+        void onPocketStateChanged(boolean pocketed);
+    }
+
+    private final SensorManager mSensorManager;
+    private final Sensor mProximitySensor;
+    private final Sensor mAccelerometer;
+    private final Handler mHandler;
+    private final Callback mCallback;
+
+    private final int mDelayMs;
+    private final int mAccelSamplingPeriodUs;
+    private final int mAccelMaxReportLatencyUs;
+
+    // Only touched on the handler thread
+    private boolean mEnabled;
+    private boolean mCovered;
+    private boolean mFaceDown;
+    private boolean mPocketed;
+    private int mRegisteredCount;
+
+    private final Runnable mReportPocketed = () -> setPocketed(true);
+
+    public PocketDetector(Context context, Handler handler, Callback callback) {
+        mSensorManager = context.getSystemService(SensorManager.class);
+        // Prefer the wake-up proximity sensor, so the change out of a pocket wakes us up
+        // by itself. Face down alone is not worth waking the AP for, so the accelerometer
+        // is the non-wakeup one and its batched events wait for the next wakeup.
+        mProximitySensor = getProximitySensor();
+        mAccelerometer = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        mHandler = handler;
+        mCallback = callback;
+
+        final Resources res = context.getResources();
+        mDelayMs = res.getInteger(R.integer.config_dozePocketDelayMs);
+        mAccelSamplingPeriodUs = res.getInteger(R.integer.config_dozePocketAccelSamplingPeriodUs);
+        mAccelMaxReportLatencyUs =
+                res.getInteger(R.integer.config_dozePocketAccelMaxReportLatencyUs);
+    }
+
+    private Sensor getProximitySensor() {
+        final Sensor sensor = mSensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY, true);
+        return sensor != null ? sensor : mSensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (!mEnabled) {
+            return;
+        }
+        if (event.sensor.getType() == Sensor.TYPE_PROXIMITY) {
+            mCovered = event.values[0] < event.sensor.getMaximumRange();
+        } else {
+            mFaceDown = event.values[2] < FACE_DOWN_Z;
+        }
+
+        if (mCovered || mFaceDown) {
+            if (!mPocketed && !mHandler.hasCallbacks(mReportPocketed)) {
+                mHandler.postDelayed(mReportPocketed, mDelayMs);
+            }
+        } else {
+            mHandler.removeCallbacks(mReportPocketed);
+            setPocketed(false);
+        }
+    }
+
+    private void setPocketed(boolean pocketed) {
+        if (pocketed == mPocketed) {
+            return;
+        }
+        if (DEBUG) Log.d(TAG, "Pocketed: " + pocketed);
+        mPocketed = pocketed;
+        mCallback.onPocketStateChanged(pocketed);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        /* Empty */
+    }
+
+    /**
+     * Must be called on the handler thread.
+     */
+    protected void enable() {
+        if (mEnabled) {
+            return;
+        }
+        if (DEBUG) Log.d(TAG, "Enabling");
+        mEnabled = true;
+        if (mProximitySensor != null && mSensorManager.registerListener(this, mProximitySensor,
+                SensorManager.SENSOR_DELAY_NORMAL, 0 /* maxReportLatencyUs */, mHandler)) {
+            mRegisteredCount++;
+            DozeStats.onSensorRegistered();
+        }
+        if (mAccelerometer != null && mSensorManager.registerListener(this, mAccelerometer,
+                mAccelSamplingPeriodUs, mAccelMaxReportLatencyUs, mHandler)) {
+            mRegisteredCount++;
+            DozeStats.onSensorRegistered();
+        }
+    }
+
+    /**
+     * Must be called on the handler thread. The state is reset without reporting it.
+     */
+    protected void disable() {
+        if (!mEnabled) {
+            return;
+        }
+        if (DEBUG) Log.d(TAG, "Disabling");
+        mEnabled = false;
+        mSensorManager.unregisterListener(this);
+        for (; mRegisteredCount > 0; mRegisteredCount--) {
+            DozeStats.onSensorUnregistered();
+        }
+        mHandler.removeCallbacks(mReportPocketed);
+        mCovered = false;
+        mFaceDown = false;
+        mPocketed = false;
+    }
+
+    protected void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "pocketDetector enabled=" + mEnabled + " covered=" + mCovered
+                + " faceDown=" + mFaceDown + " pocketed=" + mPocketed
+                + " proximity=" + (mProximitySensor != null ? mProximitySensor.getName()
+                        : "missing"));
+    }
+}
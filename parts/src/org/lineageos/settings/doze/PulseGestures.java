@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.doze;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.lineageos.settings.R;
+
+import java.io.PrintWriter;
+
+/**
+ * Pulses the ambient display when the device is picked up, tilted or taken out of a
+ * pocket while the screen is off. Pick-up is a one-shot trigger sensor that is re-armed
+ * after every trigger, tilt is a wake-up sensor batched in the hub for a short while
+ * and pocket exit is reported by the {@link PocketDetector}. Triggers within
+ * config_dozePulseDebounceMs of the last pulse are dropped. All methods and callbacks
+ * run on the handler passed in.
+ */
+public class PulseGestures implements SensorEventListener {
+    private static final boolean DEBUG = false;
+    private static final String TAG = "PulseGestures";
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final SensorManager mSensorManager;
+    private final Sensor mPickUpSensor;
+    private final Sensor mTiltSensor;
+
+    private final int mDebounceMs;
+    private final int mTiltMaxReportLatencyUs;
+
+    private boolean mPickUpArmed;
+    private boolean mTiltRegistered;
+    private long mLastPulseTime = -1;
+    private int mPulseCount;
+    private int mDebouncedCount;
+
+    private final TriggerEventListener mPickUpListener = new TriggerEventListener() {
+        @Override
+        public void onTrigger(TriggerEvent event) {
+            // Delivered on the main looper
+            mHandler.post(() -> {
+                if (!mPickUpArmed) {
+                    return;
+                }
+                pulse("pick-up");
+                // One-shot, arm it again for the next one
+                mPickUpArmed = mSensorManager.requestTriggerSensor(mPickUpListener,
+                        mPickUpSensor);
+            });
+        }
+    };
+
+    public PulseGestures(Context context, Handler handler) {
+        mContext = context;
+        mHandler = handler;
+        mSensorManager = context.getSystemService(SensorManager.class);
+        mPickUpSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_PICK_UP_GESTURE, true);
+        mTiltSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_TILT_DETECTOR, true);
+
+        final Resources res = context.getResources();
+        mDebounceMs = res.getInteger(R.integer.config_dozePulseDebounceMs);
+        mTiltMaxReportLatencyUs = res.getInteger(R.integer.config_dozeTiltMaxReportLatencyUs);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (mTiltRegistered) {
+            pulse("tilt");
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        /* Empty */
+    }
+
+    /**
+     * Arms the gestures enabled by the user, called when the screen turns off.
+     */
+    protected void enable() {
+        if (DozeUtils.isPickUpGestureEnabled(mContext) && mPickUpSensor != null
+                && !mPickUpArmed) {
+            mPickUpArmed = mSensorManager.requestTriggerSensor(mPickUpListener, mPickUpSensor);
+        }
+        if (DozeUtils.isTiltGestureEnabled(mContext) && mTiltSensor != null
+                && !mTiltRegistered) {
+            mTiltRegistered = mSensorManager.registerListener(this, mTiltSensor,
+                    SensorManager.SENSOR_DELAY_NORMAL, mTiltMaxReportLatencyUs, mHandler);
+            if (mTiltRegistered) {
+                DozeStats.onSensorRegistered();
+            }
+        }
+        if (DEBUG) Log.d(TAG, "Enabled, pickUp=" + mPickUpArmed + " tilt=" + mTiltRegistered);
+    }
+
+    protected void disable() {
+        if (mPickUpArmed) {
+            mSensorManager.cancelTriggerSensor(mPickUpListener, mPickUpSensor);
+            mPickUpArmed = false;
+        }
+        if (mTiltRegistered) {
+            mSensorManager.unregisterListener(this, mTiltSensor);
+            mTiltRegistered = false;
+            DozeStats.onSensorUnregistered();
+        }
+    }
+
+    /**
+     * Called by the doze controller when the pocket detector reports the device was
+     * taken out of a pocket or turned face up.
+     */
+    protected void onPocketExit() {
+        if (DozeUtils.isPocketGestureEnabled(mContext)) {
+            pulse("pocket");
+        }
+    }
+
+    private void pulse(String gesture) {
+        final long now = SystemClock.elapsedRealtime();
+        if (mLastPulseTime >= 0 && now - mLastPulseTime < mDebounceMs) {
+            if (DEBUG) Log.d(TAG, "Debounced " + gesture);
+            mDebouncedCount++;
+            return;
+        }
+        if (DEBUG) Log.d(TAG, "Pulsing for " + gesture);
+        mLastPulseTime = now;
+        mPulseCount++;
+        DozeStats.recordPulse();
+        DozeUtils.launchDozePulse(mContext);
+    }
+
+    protected void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "pulseGestures pickUpArmed=" + mPickUpArmed
+                + " tiltRegistered=" + mTiltRegistered + " pulses=" + mPulseCount
+                + " debounced=" + mDebouncedCount + " debounceMs=" + mDebounceMs);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.perf;
+
+import android.content.Context;
+import android.os.Handler;
+
+import org.lineageos.settings.policy.PolicyController;
+import org.lineageos.settings.policy.core.PowerModePolicy;
+
+import java.io.PrintWriter;
+
+public class PerfController implements PolicyController {
+
+    private boolean mScreenOn = true;
+    private String mCurrentApp = "";
+    private int mHeldMode = PowerModePolicy.MODE_NONE;
+    private PerfUtils mPerfUtils;
+
+    @Override
+    public String getName() {
+        return "perf";
+    }
+
+    @Override
+    public boolean isEnabled(Context context) {
+        return new PerfUtils(context).hasProfiles();
+    }
+
+    @Override
+    public void onStart(Context context, Handler handler) {
+        mPerfUtils = new PerfUtils(context);
+    }
+
+    @Override
+    public void onStop() {
+        // Do not leave the last app's floors and caps behind
+        setHeldMode(PowerModePolicy.MODE_NONE);
+        mPerfUtils = null;
+        mCurrentApp = "";
+    }
+
+    @Override
+    public void onForegroundAppChanged(String packageName) {
+        mCurrentApp = packageName;
+        setPerfProfile();
+    }
+
+    @Override
+    public void onScreenStateChanged(boolean screenOn) {
+        mScreenOn = screenOn;
+        setPerfProfile();
+    }
+
+    @Override
+    public void dump(PrintWriter pw) {
+        pw.println("  screenOn=" + mScreenOn + " currentApp=" + mCurrentApp
+                + " heldMode=" + mHeldMode);
+        if (mPerfUtils != null) {
+            pw.println("  profile=" + mPerfUtils.getStateForPackage(mCurrentApp));
+        }
+        PerfUtils.dump(pw, "  ");
+    }
+
+    private void setPerfProfile() {
+        setHeldMode(mPerfUtils.getModeForPackage(mCurrentApp, mScreenOn));
+    }
+
+    private void setHeldMode(int mode) {
+        if (mode == mHeldMode) {
+            return;
+        }
+        // Calls happen in order on the policy thread and the power HAL applies each one
+        // before returning, so a quick switch back cannot be overtaken by the one before
+        if (mode != PowerModePolicy.MODE_NONE) {
+            PowerModeUtils.acquire(mode, getName(), mCurrentApp);
+        }
+        if (mHeldMode != PowerModePolicy.MODE_NONE) {
+            PowerModeUtils.release(mHeldMode, getName(), mCurrentApp);
+        }
+        mHeldMode = mode;
+    }
+}
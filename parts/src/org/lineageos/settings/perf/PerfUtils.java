@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.perf;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.preference.PreferenceManager;
+
+import org.lineageos.settings.R;
+import org.lineageos.settings.policy.PolicyUtils;
+import org.lineageos.settings.policy.core.PerfPolicy;
+import org.lineageos.settings.policy.core.PowerModePolicy;
+import org.lineageos.settings.policy.core.ProfileTable;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Per-app performance profiles. The floors and caps of every profile are powerhint.json
+ * actions of a power HAL mode, see config_perfProfileModes, so they are held through
+ * {@link PowerModeUtils} and the power HAL keeps them in place around its own boosts
+ * instead of resetting them when a boost ends.
+ */
+public final class PerfUtils {
+    private static final String PERF_CONTROL = "perf_control";
+
+    protected static final int STATE_DEFAULT = PerfPolicy.STATE_DEFAULT;
+    protected static final int STATE_PERFORMANCE = PerfPolicy.STATE_PERFORMANCE;
+    protected static final int STATE_GAMING = PerfPolicy.STATE_GAMING;
+    protected static final int STATE_BATTERY = PerfPolicy.STATE_BATTERY;
+
+    private static final String PERF_PERFORMANCE = "perf.performance=";
+    private static final String PERF_GAMING = "perf.gaming=";
+    private static final String PERF_BATTERY = "perf.battery=";
+
+    // Parsed perf_control table, shared by every instance in the process
+    private static Map<String, Integer> sStates;
+    // Mode of every profile, starting with STATE_PERFORMANCE
+    private static int[] sModes;
+
+    private Context mContext;
+    private SharedPreferences mSharedPrefs;
+
+    protected PerfUtils(Context context) {
+        mContext = context;
+        mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+    }
+
+    private static String getDefaultValue() {
+        return PERF_PERFORMANCE + ":" + PERF_GAMING + ":" + PERF_BATTERY;
+    }
+
+    private void writeValue(String profiles) {
+        mSharedPrefs.edit().putString(PERF_CONTROL, profiles).apply();
+        synchronized (PerfUtils.class) {
+            sStates = ProfileTable.parse(profiles);
+        }
+    }
+
+    private String getValue() {
+        String value = mSharedPrefs.getString(PERF_CONTROL, null);
+
+        if (value == null || value.isEmpty()) {
+            value = getDefaultValue();
+            writeValue(value);
+        }
+        return value;
+    }
+
+    private Map<String, Integer> getStates() {
+        synchronized (PerfUtils.class) {
+            if (sStates == null) {
+                sStates = ProfileTable.parse(getValue());
+            }
+            return sStates;
+        }
+    }
+
+    protected void writePackage(String packageName, int mode) {
+        String value = getValue();
+        value = value.replace(packageName + ",", "");
+        String[] modes = value.split(":");
+
+        if (mode != STATE_DEFAULT) {
+            modes[mode - 1] = modes[mode - 1] + packageName + ",";
+        }
+
+        writeValue(modes[0] + ":" + modes[1] + ":" + modes[2]);
+        PolicyUtils.checkService(mContext);
+    }
+
+    protected boolean hasProfiles() {
+        return !getStates().isEmpty() && getModes().length > 0;
+    }
+
+    protected int getStateForPackage(String packageName) {
+        return PerfPolicy.getState(getStates(), packageName);
+    }
+
+    private int[] getModes() {
+        synchronized (PerfUtils.class) {
+            if (sModes == null) {
+                sModes = mContext.getResources().getIntArray(R.array.config_perfProfileModes);
+            }
+            return sModes;
+        }
+    }
+
+    /**
+     * @return the power HAL mode to hold for the given app, or
+     *         {@link PowerModePolicy#MODE_NONE}
+     */
+    protected int getModeForPackage(String packageName, boolean screenOn) {
+        return PerfPolicy.getMode(getStateForPackage(packageName), screenOn, getModes());
+    }
+
+    protected static void dump(PrintWriter pw, String prefix) {
+        synchronized (PerfUtils.class) {
+            pw.println(prefix + "modes=" + Arrays.toString(sModes)
+                    + " profiles=" + (sStates != null ? sStates.size() : "not loaded"));
+        }
+    }
+}
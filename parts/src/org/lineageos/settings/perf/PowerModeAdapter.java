@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.perf;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.BaseAdapter;
+import android.widget.Spinner;
+import android.widget.TextView;
+
+import org.lineageos.settings.R;
+
+/**
+ * Power mode choices of an app list entry, shared by the thermal and refresh rate lists.
+ */
+public class PowerModeAdapter extends BaseAdapter
+        implements AdapterView.OnItemSelectedListener {
+
+    private final LayoutInflater inflater;
+    private final PowerModeUtils mPowerModeUtils;
+    private final int[] items = {
+            R.string.power_mode_none,
+            R.string.power_mode_sustained,
+            R.string.power_mode_fixed,
+            R.string.power_mode_rendering
+    };
+
+    public PowerModeAdapter(Context context) {
+        inflater = LayoutInflater.from(context);
+        mPowerModeUtils = new PowerModeUtils(context);
+    }
+
+    /**
+     * Shows the spinner and points it at the given package.
+     */
+    public void bind(Spinner spinner, String packageName) {
+        spinner.setVisibility(View.VISIBLE);
+        if (spinner.getAdapter() != this) {
+            spinner.setAdapter(this);
+        }
+        // The list may have set the adapter itself when creating the view holder
+        spinner.setOnItemSelectedListener(this);
+        spinner.setTag(packageName);
+        spinner.setSelection(mPowerModeUtils.getStateForPackage(packageName), false);
+    }
+
+    @Override
+    public int getCount() {
+        return items.length;
+    }
+
+    @Override
+    public Object getItem(int position) {
+        return items[position];
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return 0;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view;
+        if (convertView != null) {
+            view = (TextView) convertView;
+        } else {
+            view = (TextView) inflater.inflate(android.R.layout.simple_spinner_dropdown_item,
+                    parent, false);
+        }
+
+        view.setText(items[position]);
+        view.setTextSize(14f);
+
+        return view;
+    }
+
+    @Override
+    public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+        final String packageName = (String) parent.getTag();
+        if (packageName != null
+                && mPowerModeUtils.getStateForPackage(packageName) != position) {
+            mPowerModeUtils.writePackage(packageName, position);
+        }
+    }
+
+    @Override
+    public void onNothingSelected(AdapterView<?> parent) {
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.perf;
+
+import android.content.Context;
+import android.os.Handler;
+
+import org.lineageos.settings.policy.PolicyController;
+import org.lineageos.settings.policy.core.PowerModePolicy;
+
+import java.io.PrintWriter;
+
+public class PowerModeController implements PolicyController {
+
+    private boolean mScreenOn = true;
+    private String mCurrentApp = "";
+    private int mHeldMode = PowerModePolicy.MODE_NONE;
+    private PowerModeUtils mPowerModeUtils;
+
+    @Override
+    public String getName() {
+        return "powermode";
+    }
+
+    @Override
+    public boolean isEnabled(Context context) {
+        return new PowerModeUtils(context).hasModes();
+    }
+
+    @Override
+    public void onStart(Context context, Handler handler) {
+        mPowerModeUtils = new PowerModeUtils(context);
+    }
+
+    @Override
+    public void onStop() {
+        setHeldMode(PowerModePolicy.MODE_NONE);
+        mPowerModeUtils = null;
+        mCurrentApp = "";
+    }
+
+    @Override
+    public void onForegroundAppChanged(String packageName) {
+        mCurrentApp = packageName;
+        updatePowerMode();
+    }
+
+    @Override
+    public void onScreenStateChanged(boolean screenOn) {
+        mScreenOn = screenOn;
+        updatePowerMode();
+    }
+
+    @Override
+    public void dump(PrintWriter pw) {
+        pw.println("  screenOn=" + mScreenOn + " currentApp=" + mCurrentApp
+                + " heldMode=" + mHeldMode);
+        PowerModeUtils.dump(pw, "  ");
+    }
+
+    private void updatePowerMode() {
+        setHeldMode(PowerModePolicy.getMode(
+                mPowerModeUtils.getStateForPackage(mCurrentApp), mScreenOn));
+    }
+
+    private void setHeldMode(int mode) {
+        if (mode == mHeldMode) {
+            return;
+        }
+        // Take the new mode before dropping the old one, so a mode another holder shares
+        // with us is not turned off in between
+        if (mode != PowerModePolicy.MODE_NONE) {
+            PowerModeUtils.acquire(mode, getName(), mCurrentApp);
+        }
+        if (mHeldMode != PowerModePolicy.MODE_NONE) {
+            PowerModeUtils.release(mHeldMode, getName(), mCurrentApp);
+        }
+        mHeldMode = mode;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.perf;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.IPowerManager;
+import android.os.RemoteException;
+import android.os.ServiceManager;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.PreferenceManager;
+
+import org.lineageos.settings.policy.PolicyUtils;
+import org.lineageos.settings.policy.core.PowerModeHolds;
+import org.lineageos.settings.policy.core.PowerModePolicy;
+import org.lineageos.settings.policy.core.ProfileTable;
+import org.lineageos.settings.utils.TransitionLog;
+
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-app power HAL modes, assigned from the thermal and refresh rate app lists. The
+ * modes are passed through PowerManagerService straight to the power HAL, which keeps
+ * no count of who asked for a mode, so turning one off also ends it for a framework
+ * component holding it at the same time. Within this process every mode is therefore
+ * counted per holder, such as a controller, and only turned off once the last holder
+ * let go, and only if turning it on from here actually succeeded.
+ */
+public final class PowerModeUtils {
+    private static final String TAG = "PowerModeUtils";
+
+    private static final String POWER_MODE_CONTROL = "power_mode_control";
+
+    public static final int STATE_NONE = PowerModePolicy.STATE_NONE;
+    public static final int STATE_SUSTAINED_PERFORMANCE =
+            PowerModePolicy.STATE_SUSTAINED_PERFORMANCE;
+    public static final int STATE_FIXED_PERFORMANCE = PowerModePolicy.STATE_FIXED_PERFORMANCE;
+    public static final int STATE_EXPENSIVE_RENDERING =
+            PowerModePolicy.STATE_EXPENSIVE_RENDERING;
+
+    private static final String POWER_SUSTAINED = "power.sustained=";
+    private static final String POWER_FIXED = "power.fixed=";
+    private static final String POWER_RENDERING = "power.rendering=";
+
+    // Parsed power_mode_control table, shared by every instance in the process
+    private static Map<String, Integer> sStates;
+
+    // Holders of every mode and the modes turned on from here, guarded by the class lock
+    private static final PowerModeHolds sHolds = new PowerModeHolds();
+    private static final Set<Integer> sEnabledModes = new HashSet<>();
+    private static final TransitionLog sLog = new TransitionLog(32);
+
+    private Context mContext;
+    private SharedPreferences mSharedPrefs;
+
+    public PowerModeUtils(Context context) {
+        mContext = context;
+        mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+    }
+
+    private static String getDefaultValue() {
+        return POWER_SUSTAINED + ":" + POWER_FIXED + ":" + POWER_RENDERING;
+    }
+
+    private void writeValue(String modes) {
+        mSharedPrefs.edit().putString(POWER_MODE_CONTROL, modes).apply();
+        synchronized (PowerModeUtils.class) {
+            sStates = ProfileTable.parse(modes);
+        }
+    }
+
+    private String getValue() {
+        String value = mSharedPrefs.getString(POWER_MODE_CONTROL, null);
+
+        if (value == null || value.isEmpty()) {
+            value = getDefaultValue();
+            writeValue(value);
+        }
+        return value;
+    }
+
+    private Map<String, Integer> getStates() {
+        synchronized (PowerModeUtils.class) {
+            if (sStates == null) {
+                sStates = ProfileTable.parse(getValue());
+            }
+            return sStates;
+        }
+    }
+
+    public void writePackage(String packageName, int state) {
+        String value = getValue();
+        value = value.replace(packageName + ",", "");
+        String[] modes = value.split(":");
+
+        if (state != STATE_NONE) {
+            modes[state - 1] = modes[state - 1] + packageName + ",";
+        }
+
+        writeValue(modes[0] + ":" + modes[1] + ":" + modes[2]);
+        PolicyUtils.checkService(mContext);
+    }
+
+    protected boolean hasModes() {
+        return !getStates().isEmpty();
+    }
+
+    public int getStateForPackage(String packageName) {
+        return PowerModePolicy.getState(getStates(), packageName);
+    }
+
+    /**
+     * Holds the given mode for the given holder, enabling it if nobody held it yet.
+     *
+     * @param holder who holds the mode, a holder holds a mode at most once
+     * @param subject what the mode is held for, used in dumps
+     */
+    protected static void acquire(int mode, String holder, String subject) {
+        synchronized (PowerModeUtils.class) {
+            if (!sHolds.acquire(mode, holder)) {
+                sLog.recordSkip();
+                return;
+            }
+        }
+        final boolean enabled = setPowerMode(mode, true, subject);
+        synchronized (PowerModeUtils.class) {
+            if (enabled) {
+                sEnabledModes.add(mode);
+            }
+        }
+    }
+
+    /**
+     * Lets go of the given mode for the given holder, disabling it once the last holder
+     * let go if it was enabled from here.
+     */
+    protected static void release(int mode, String holder, String subject) {
+        synchronized (PowerModeUtils.class) {
+            if (!sHolds.release(mode, holder) || !sEnabledModes.remove(mode)) {
+                sLog.recordSkip();
+                return;
+            }
+        }
+        setPowerMode(mode, false, subject);
+    }
+
+    /**
+     * @return whether the power HAL accepted the mode
+     */
+    private static boolean setPowerMode(int mode, boolean enabled, String subject) {
+        boolean success = false;
+        final IPowerManager powerManager = IPowerManager.Stub.asInterface(
+                ServiceManager.getService(Context.POWER_SERVICE));
+        if (powerManager != null) {
+            try {
+                success = powerManager.setPowerModeChecked(mode, enabled);
+            } catch (RemoteException e) {
+                Log.e(TAG, "Failed to set power mode " + mode, e);
+            }
+        }
+        sLog.recordWrite(subject, mode + "=" + enabled, success);
+        return success;
+    }
+
+    /**
+     * Forgets the parsed table, so every test starts afresh.
+     */
+    @VisibleForTesting
+    static void reset() {
+        synchronized (PowerModeUtils.class) {
+            sStates = null;
+        }
+    }
+
+    protected static void dump(PrintWriter pw, String prefix) {
+        synchronized (PowerModeUtils.class) {
+            pw.println(prefix + "held=" + sHolds + " enabled=" + sEnabledModes);
+        }
+        sLog.dump(pw, prefix);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy;
+
+import android.content.Context;
+import android.os.Handler;
+
+import java.io.PrintWriter;
+
+/**
+ * A policy plugged into {@link PolicyService}. All callbacks are delivered in order on
+ * the host's handler thread. When a controller is started it is first brought up to
+ * date with the current foreground app, screen, orientation and battery state.
+ */
+public interface PolicyController {
+
+    /**
+     * @return a short name used in logs
+     */
+    String getName();
+
+    /**
+     * @return whether the controller currently has anything to do, controllers that
+     *         are not enabled are stopped and receive no events
+     */
+    boolean isEnabled(Context context);
+
+    void onStart(Context context, Handler handler);
+
+    void onStop();
+
+    default void onForegroundAppChanged(String packageName) {}
+
+    default void onScreenStateChanged(boolean screenOn) {}
+
+    default void onOrientationChanged(boolean landscape) {}
+
+    default void onBatteryChanged(int level, boolean plugged) {}
+
+    /**
+     * Prints the controller's state for dumpsys, indented by two spaces. Only called
+     * while the controller is started.
+     */
+    default void dump(PrintWriter pw) {}
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy;
+
+import android.app.ActivityTaskManager;
+import android.app.ActivityTaskManager.RootTaskInfo;
+import android.app.IActivityTaskManager;
+import android.app.Service;
+import android.app.TaskStackListener;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Configuration;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.RemoteException;
+import android.util.Log;
+
+import org.lineageos.settings.utils.TraceUtils;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+/**
+ * Single long-lived host for the per-app and doze policies. It owns the signal sources
+ * (foreground app, screen state, orientation and battery) and forwards them, in order
+ * and on one thread, to the {@link PolicyController}s that currently have work to do.
+ */
+public class PolicyService extends Service {
+
+    private static final String TAG = "PolicyService";
+    private static final boolean DEBUG = false;
+
+    private static final long DUMP_TIMEOUT_MS = 1000;
+
+    private HandlerThread mHandlerThread;
+    private Handler mHandler;
+    private IActivityTaskManager mActivityTaskManager;
+
+    private PolicyController[] mControllers;
+    private boolean[] mStarted;
+
+    // Only set while event recording is enabled
+    private PolicyTraceRecorder mTraceRecorder;
+
+    // Current signal state, only touched on the handler thread
+    private String mForegroundApp = "";
+    private boolean mScreenOn = true;
+    private boolean mLandscape = false;
+    private int mBatteryLevel = -1;
+    private boolean mPlugged = false;
+
+    private final BroadcastReceiver mScreenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            switch (intent.getAction()) {
+                case Intent.ACTION_SCREEN_OFF:
+                    setScreenOn(false);
+                    break;
+                case Intent.ACTION_SCREEN_ON:
+                    setScreenOn(true);
+                    break;
+            }
+        }
+    };
+
+    private final BroadcastReceiver mBatteryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            final boolean plugged = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+            // ACTION_BATTERY_CHANGED is sticky and also fires for voltage and temperature
+            if (level == mBatteryLevel && plugged == mPlugged) {
+                return;
+            }
+            mBatteryLevel = level;
+            mPlugged = plugged;
+            if (mTraceRecorder != null) {
+                mTraceRecorder.recordBattery(level, plugged);
+            }
+            for (int i = 0; i < mControllers.length; i++) {
+                if (mStarted[i]) {
+                    mControllers[i].onBatteryChanged(level, plugged);
+                }
+            }
+        }
+    };
+
+    private final Runnable mUpdateForegroundApp = this::updateForegroundApp;
+
+    private final TaskStackListener mTaskListener = new TaskStackListener() {
+        @Override
+        public void onTaskStackChanged() {
+            TraceUtils.beginSection("PolicyService#onTaskStackChanged");
+            // Coalesce bursts of task stack changes into one focused task query
+            mHandler.removeCallbacks(mUpdateForegroundApp);
+            mHandler.post(mUpdateForegroundApp);
+            TraceUtils.endSection();
+        }
+    };
+
+    @Override
+    public void onCreate() {
+        if (DEBUG) Log.d(TAG, "Creating service");
+        super.onCreate();
+        mHandlerThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_FOREGROUND);
+        mHandlerThread.start();
+        mHandler = new Handler(mHandlerThread.getLooper());
+
+        mControllers = PolicyUtils.createControllers();
+        mStarted = new boolean[mControllers.length];
+
+        mScreenOn = getSystemService(PowerManager.class).isInteractive();
+        mLandscape = getResources().getConfiguration().orientation
+                == Configuration.ORIENTATION_LANDSCAPE;
+
+        mHandler.post(() -> {
+            mTraceRecorder = PolicyTraceRecorder.create(this);
+            if (mTraceRecorder != null) {
+                // Start the trace from the state the controllers are brought up with
+                mTraceRecorder.recordScreen(mScreenOn);
+                mTraceRecorder.recordOrientation(mLandscape);
+            }
+        });
+
+        IntentFilter screenFilter = new IntentFilter();
+        screenFilter.addAction(Intent.ACTION_SCREEN_OFF);
+        screenFilter.addAction(Intent.ACTION_SCREEN_ON);
+        registerReceiver(mScreenReceiver, screenFilter, null, mHandler);
+        registerReceiver(mBatteryReceiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED),
+                null, mHandler);
+
+        try {
+            mActivityTaskManager = ActivityTaskManager.getService();
+            mActivityTaskManager.registerTaskStackListener(mTaskListener);
+        } catch (RemoteException e) {
+            Log.e(TAG, "Failed to register task stack listener", e);
+        }
+        mHandler.post(mUpdateForegroundApp);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (DEBUG) Log.d(TAG, "Starting service");
+        mHandler.post(this::updateControllers);
+        return START_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (DEBUG) Log.d(TAG, "Destroying service");
+        try {
+            mActivityTaskManager.unregisterTaskStackListener(mTaskListener);
+        } catch (RemoteException e) {
+            // Do nothing
+        }
+        unregisterReceiver(mScreenReceiver);
+        unregisterReceiver(mBatteryReceiver);
+        mHandler.post(() -> {
+            for (int i = 0; i < mControllers.length; i++) {
+                if (mStarted[i]) {
+                    mControllers[i].onStop();
+                    mStarted[i] = false;
+                }
+            }
+            if (mTraceRecorder != null) {
+                mTraceRecorder.close();
+                mTraceRecorder = null;
+            }
+        });
+        mHandlerThread.quitSafely();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        final boolean landscape = newConfig.orientation == Configuration.ORIENTATION_LANDSCAPE;
+        mHandler.post(() -> {
+            if (landscape == mLandscape) {
+                return;
+            }
+            mLandscape = landscape;
+            if (mTraceRecorder != null) {
+                mTraceRecorder.recordOrientation(landscape);
+            }
+            for (int i = 0; i < mControllers.length; i++) {
+                if (mStarted[i]) {
+                    mControllers[i].onOrientationChanged(landscape);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        // Controller state is only touched on the handler thread, dump from there
+        final boolean dumped = mHandler.runWithScissors(() -> {
+            pw.println("PolicyService state:");
+            pw.println("  foregroundApp=" + mForegroundApp + " screenOn=" + mScreenOn
+                    + " landscape=" + mLandscape + " batteryLevel=" + mBatteryLevel
+                    + " plugged=" + mPlugged);
+            for (int i = 0; i < mControllers.length; i++) {
+                pw.println();
+                pw.println(mControllers[i].getName() + (mStarted[i] ? ":" : ": stopped"));
+                if (mStarted[i]) {
+                    mControllers[i].dump(pw);
+                }
+            }
+        }, DUMP_TIMEOUT_MS);
+        if (!dumped) {
+            pw.println("PolicyService: handler thread did not respond");
+        }
+    }
+
+    private void updateControllers() {
+        boolean anyStarted = false;
+        for (int i = 0; i < mControllers.length; i++) {
+            final PolicyController controller = mControllers[i];
+            final boolean enabled = controller.isEnabled(this);
+            if (enabled && !mStarted[i]) {
+                if (DEBUG) Log.d(TAG, "Starting " + controller.getName());
+                mStarted[i] = true;
+                controller.onStart(this, mHandler);
+                // Bring the controller up to date before it sees any change
+                controller.onScreenStateChanged(mScreenOn);
+                controller.onOrientationChanged(mLandscape);
+                if (mBatteryLevel >= 0) {
+                    controller.onBatteryChanged(mBatteryLevel, mPlugged);
+                }
+                if (!mForegroundApp.isEmpty()) {
+                    controller.onForegroundAppChanged(mForegroundApp);
+                }
+            } else if (!enabled && mStarted[i]) {
+                if (DEBUG) Log.d(TAG, "Stopping " + controller.getName());
+                mStarted[i] = false;
+                controller.onStop();
+            }
+            anyStarted |= mStarted[i];
+        }
+        if (!anyStarted) {
+            stopSelf();
+        }
+    }
+
+    private void setScreenOn(boolean screenOn) {
+        if (screenOn == mScreenOn) {
+            return;
+        }
+        mScreenOn = screenOn;
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordScreen(screenOn);
+        }
+        for (int i = 0; i < mControllers.length; i++) {
+            if (mStarted[i]) {
+                mControllers[i].onScreenStateChanged(screenOn);
+            }
+        }
+    }
+
+    private void updateForegroundApp() {
+        final String foregroundApp;
+        TraceUtils.beginSection("PolicyService#getFocusedRootTaskInfo");
+        try {
+            final RootTaskInfo info = mActivityTaskManager.getFocusedRootTaskInfo();
+            if (info == null || info.topActivity == null) {
+                return;
+            }
+            foregroundApp = info.topActivity.getPackageName();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to resolve foreground app", e);
+            return;
+        } finally {
+            TraceUtils.endSection();
+        }
+        if (foregroundApp.equals(mForegroundApp)) {
+            return;
+        }
+        mForegroundApp = foregroundApp;
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordForegroundApp(foregroundApp);
+        }
+        TraceUtils.beginSection("PolicyService#onForegroundAppChanged", foregroundApp);
+        for (int i = 0; i < mControllers.length; i++) {
+            if (mStarted[i]) {
+                mControllers[i].onForegroundAppChanged(foregroundApp);
+            }
+        }
+        TraceUtils.endSection();
+    }
+}
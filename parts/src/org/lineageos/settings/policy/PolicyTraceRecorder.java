@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.util.Log;
+
+import org.lineageos.settings.policy.core.PolicyTrace;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records the policy host's input events to a {@link PolicyTrace} file while
+ * "debug.parts.policy_trace" is set, for offline replay. The previous trace is kept
+ * next to it with an ".old" suffix. Must only be used from the policy handler thread.
+ */
+final class PolicyTraceRecorder {
+    private static final String TAG = "PolicyTraceRecorder";
+
+    private static final String PROP_ENABLED = "debug.parts.policy_trace";
+    private static final String FILE_NAME = "policy_trace.bin";
+    private static final int MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private PolicyTrace.Writer mWriter;
+
+    /**
+     * @return a recorder, or null if tracing is not enabled or the file cannot be opened
+     */
+    static PolicyTraceRecorder create(Context context) {
+        if (!SystemProperties.getBoolean(PROP_ENABLED, false)) {
+            return null;
+        }
+        final File file = new File(context.getFilesDir(), FILE_NAME);
+        file.renameTo(new File(context.getFilesDir(), FILE_NAME + ".old"));
+        try {
+            final PolicyTraceRecorder recorder = new PolicyTraceRecorder();
+            recorder.mWriter = new PolicyTrace.Writer(
+                    new BufferedOutputStream(new FileOutputStream(file)),
+                    SystemClock.elapsedRealtime());
+            Log.i(TAG, "Recording policy events to " + file);
+            return recorder;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open " + file, e);
+            return null;
+        }
+    }
+
+    void recordForegroundApp(String packageName) {
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.writeForegroundApp(SystemClock.elapsedRealtime(), packageName);
+        } catch (IOException e) {
+            onError(e);
+        }
+        checkSize();
+    }
+
+    void recordScreen(boolean screenOn) {
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.writeScreen(SystemClock.elapsedRealtime(), screenOn);
+            if (!screenOn) {
+                // Screen off is a quiet moment, and the trace may be pulled any time after
+                mWriter.flush();
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+        checkSize();
+    }
+
+    void recordOrientation(boolean landscape) {
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.writeOrientation(SystemClock.elapsedRealtime(), landscape);
+        } catch (IOException e) {
+            onError(e);
+        }
+        checkSize();
+    }
+
+    void recordBattery(int level, boolean plugged) {
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.writeBattery(SystemClock.elapsedRealtime(), level, plugged);
+        } catch (IOException e) {
+            onError(e);
+        }
+        checkSize();
+    }
+
+    void close() {
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.close();
+        } catch (IOException e) {
+            // Ignored, not much we can do anyway
+        }
+        mWriter = null;
+    }
+
+    private void checkSize() {
+        if (mWriter != null && mWriter.size() >= MAX_SIZE_BYTES) {
+            Log.w(TAG, "Trace reached " + MAX_SIZE_BYTES + " bytes, stopping");
+            close();
+        }
+    }
+
+    private void onError(IOException e) {
+        Log.e(TAG, "Failed to record policy event, stopping", e);
+        close();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.policy;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.UserHandle;
+import android.util.Log;
+
+import org.lineageos.settings.doze.DozeController;
+import org.lineageos.settings.perf.PerfController;
+import org.lineageos.settings.perf.PowerModeController;
+import org.lineageos.settings.refreshrate.RefreshController;
+import org.lineageos.settings.saturation.SaturationController;
+import org.lineageos.settings.thermal.ThermalController;
+
+public final class PolicyUtils {
+    private static final String TAG = "PolicyUtils";
+    private static final boolean DEBUG = false;
+
+    private PolicyUtils() {
+        // This class is not supposed to be instantiated
+    }
+
+    /**
+     * @return a new instance of every controller, in dispatch order
+     */
+    protected static PolicyController[] createControllers() {
+        return new PolicyController[] {
+            new ThermalController(),
+            new PerfController(),
+            new PowerModeController(),
+            new RefreshController(),
+            new SaturationController(),
+            new DozeController(),
+        };
+    }
+
+    protected static void startService(Context context) {
+        if (DEBUG) Log.d(TAG, "Starting service");
+        context.startServiceAsUser(new Intent(context, PolicyService.class),
+                UserHandle.CURRENT);
+    }
+
+    protected static void stopService(Context context) {
+        if (DEBUG) Log.d(TAG, "Stopping service");
+        context.stopServiceAsUser(new Intent(context, PolicyService.class),
+                UserHandle.CURRENT);
+    }
+
+    /**
+     * Runs the policy host only while at least one controller has work to do. A running
+     * host re-evaluates which controllers to attach every time this is called.
+     */
+    public static void checkService(Context context) {
+        for (PolicyController controller : createControllers()) {
+            if (controller.isEnabled(context)) {
+                startService(context);
+                return;
+            }
+        }
+        stopService(context);
+    }
+}
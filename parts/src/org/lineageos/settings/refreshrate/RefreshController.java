@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.refreshrate;
+
+import android.content.Context;
+import android.os.Handler;
+
+import org.lineageos.settings.policy.PolicyController;
+import org.lineageos.settings.policy.core.RefreshPolicy;
+
+import java.io.PrintWriter;
+
+public class RefreshController implements PolicyController {
+
+    private String mCurrentApp = "";
+    private boolean mLandscape = false;
+    private RefreshUtils mRefreshUtils;
+
+    @Override
+    public String getName() {
+        return "refresh";
+    }
+
+    @Override
+    public boolean isEnabled(Context context) {
+        return new RefreshUtils(context).hasProfiles();
+    }
+
+    @Override
+    public void onStart(Context context, Handler handler) {
+        mRefreshUtils = new RefreshUtils(context);
+    }
+
+    @Override
+    public void onStop() {
+        mRefreshUtils = null;
+        mCurrentApp = "";
+    }
+
+    @Override
+    public void onForegroundAppChanged(String packageName) {
+        mCurrentApp = packageName;
+        setRefreshRate();
+    }
+
+    @Override
+    public void onScreenStateChanged(boolean screenOn) {
+        // The display may have dropped the app's rate while it was off
+        if (screenOn && !mCurrentApp.isEmpty()) {
+            setRefreshRate();
+        }
+    }
+
+    @Override
+    public void onOrientationChanged(boolean landscape) {
+        mLandscape = landscape;
+        if (!mCurrentApp.isEmpty() && RefreshPolicy.followsOrientation(
+                mRefreshUtils.getStateForPackage(mCurrentApp))) {
+            mRefreshUtils.setRefreshRate(mCurrentApp, landscape);
+        }
+    }
+
+    @Override
+    public void dump(PrintWriter pw) {
+        pw.println("  currentApp=" + mCurrentApp + " landscape=" + mLandscape);
+        if (mRefreshUtils != null) {
+            pw.println("  profile=" + mRefreshUtils.getStateForPackage(mCurrentApp));
+        }
+        RefreshUtils.dump(pw, "  ");
+    }
+
+    private void setRefreshRate() {
+        if (!RefreshUtils.isAppInList) {
+            mRefreshUtils.getOldRate();
+        }
+        mRefreshUtils.setRefreshRate(mCurrentApp, mLandscape);
+    }
+}
@@ -43,6 +43,8 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import com.android.settingslib.applications.ApplicationsState;
 
 import org.lineageos.settings.R;
+import org.lineageos.settings.utils.UiHiddenCallbacks;
+import org.lineageos.settings.perf.PowerModeAdapter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,6 +58,8 @@ public class RefreshSettingsFragment extends PreferenceFragment
     private AllPackagesAdapter mAllPackagesAdapter;
     private ApplicationsState mApplicationsState;
     private ApplicationsState.Session mSession;
+    private final UiHiddenCallbacks mUiHiddenCallbacks =
+            new UiHiddenCallbacks(this::releaseSession);
     private ActivityFilter mActivityFilter;
     private Map<String, ApplicationsState.AppEntry> mEntryMap =
             new HashMap<String, ApplicationsState.AppEntry>();
@@ -73,7 +77,7 @@ public class RefreshSettingsFragment extends PreferenceFragment
 
         mApplicationsState = ApplicationsState.getInstance(getActivity().getApplication());
         mSession = mApplicationsState.newSession(this);
-        mSession.onResume();
+        getActivity().getApplication().registerComponentCallbacks(mUiHiddenCallbacks);
         mActivityFilter = new ActivityFilter(getActivity().getPackageManager());
 
         mAllPackagesAdapter = new AllPackagesAdapter(getActivity());
@@ -100,16 +104,46 @@ public class RefreshSettingsFragment extends PreferenceFragment
     @Override
     public void onResume() {
         super.onResume();
+        if (mSession == null) {
+            mSession = mApplicationsState.newSession(this);
+        }
+        mSession.onResume();
         getActivity().setTitle(getResources().getString(R.string.refresh_title));
         rebuild();
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        // Let ApplicationsState stop its background work while the list is hidden
+        if (mSession != null) {
+            mSession.onPause();
+        }
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
 
-        mSession.onPause();
+        getActivity().getApplication().unregisterComponentCallbacks(mUiHiddenCallbacks);
+        releaseSession();
+    }
+
+    /**
+     * Drops the session and the entries it loaded, the list is rebuilt on the next
+     * resume. Icons are loaded again by ensureIcon() as rows are bound.
+     */
+    private void releaseSession() {
+        if (mSession == null) {
+            return;
+        }
         mSession.onDestroy();
+        mSession = null;
+        for (ApplicationsState.AppEntry entry : mEntryMap.values()) {
+            entry.icon = null;
+        }
+        mEntryMap.clear();
+        mAllPackagesAdapter.setEntries(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
     }
 
     @Override
@@ -209,6 +243,7 @@ public class RefreshSettingsFragment extends PreferenceFragment
     private class ViewHolder extends RecyclerView.ViewHolder {
         private TextView title;
         private Spinner mode;
+        private Spinner powerMode;
         private ImageView icon;
         private View rootView;
         private ImageView stateIcon;
@@ -217,6 +252,7 @@ public class RefreshSettingsFragment extends PreferenceFragment
             super(view);
             this.title = view.findViewById(R.id.app_name);
             this.mode = view.findViewById(R.id.app_mode);
+            this.powerMode = view.findViewById(R.id.app_power_mode);
             this.icon = view.findViewById(R.id.app_icon);
             this.stateIcon = view.findViewById(R.id.state);
             this.rootView = view;
@@ -294,8 +330,10 @@ public class RefreshSettingsFragment extends PreferenceFragment
 @NonNull
         @Override
          public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-            return new ViewHolder(LayoutInflater.from(parent.getContext())
+            ViewHolder holder = new ViewHolder(LayoutInflater.from(parent.getContext())
                     .inflate(R.layout.refresh_list_item, parent, false));
+            holder.powerMode.setAdapter(new PowerModeAdapter(holder.itemView.getContext()));
+            return holder;
         }
 
  	@Override
@@ -316,6 +354,8 @@ public class RefreshSettingsFragment extends PreferenceFragment
             int packageState = mRefreshUtils.getStateForPackage(entry.info.packageName);
             holder.mode.setSelection(packageState, false);
             holder.mode.setTag(entry);
+            ((PowerModeAdapter) holder.powerMode.getAdapter())
+                    .bind(holder.powerMode, entry.info.packageName);
             holder.stateIcon.setImageResource(getStateDrawable(packageState));
         }
 
@@ -17,17 +17,23 @@
 package org.lineageos.settings.refreshrate;
 
 import android.content.Context;
-import android.content.Intent;
 import android.content.SharedPreferences;
-import android.os.UserHandle;
 import android.view.Display;
 
 import android.provider.Settings;
 import android.util.Log;
-import android.view.OrientationEventListener;
-import android.content.res.Configuration;
+import androidx.annotation.VisibleForTesting;
 import androidx.preference.PreferenceManager;
 
+import org.lineageos.settings.policy.PolicyUtils;
+import org.lineageos.settings.policy.core.ProfileTable;
+import org.lineageos.settings.policy.core.RefreshPolicy;
+import org.lineageos.settings.utils.TraceUtils;
+import org.lineageos.settings.utils.TransitionLog;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
 public final class RefreshUtils {
 
     private static final String REFRESH_CONTROL = "refresh_control";
@@ -39,37 +45,58 @@ public final class RefreshUtils {
     private Context mContext;
     protected static boolean isAppInList = false;
 
-    protected static final int STATE_DEFAULT = 0;
-    protected static final int STATE_STANDARD = 1;
-    protected static final int STATE_EXTREME = 2;
-    protected static final int STATE_LAND = 3;
+    protected static final int STATE_DEFAULT = RefreshPolicy.STATE_DEFAULT;
+    protected static final int STATE_STANDARD = RefreshPolicy.STATE_STANDARD;
+    protected static final int STATE_EXTREME = RefreshPolicy.STATE_EXTREME;
+    protected static final int STATE_LAND = RefreshPolicy.STATE_LAND;
 
-    private static final float REFRESH_STATE_DEFAULT = 120f;
-    private static final float REFRESH_STATE_STANDARD = 60f;
-    private static final float REFRESH_STATE_EXTREME = 120f;
-    private static final float REFRESH_STATE_LAND = 60f;
+    private static final float REFRESH_STATE_DEFAULT = RefreshPolicy.RATE_DEFAULT;
 
     private static final String REFRESH_STANDARD = "refresh.standard=";
     private static final String REFRESH_EXTREME = "refresh.extreme=";
     private static final String REFRESH_LAND = "refresh.land=";
 
-    private SharedPreferences mSharedPrefs;
+    // Parsed refresh_control table, shared by every instance in the process
+    private static Map<String, Integer> sStates;
 
-    private OrientationEventListener orientationListener;
-    private boolean isLandscape = false;
+    private static final TransitionLog sLog = new TransitionLog(32);
+
+    private SharedPreferences mSharedPrefs;
 
     protected RefreshUtils(Context context) {
         mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
         mContext = context;
     }
 
-    public static void startService(Context context) {
-        context.startServiceAsUser(new Intent(context, RefreshService.class),
-                UserHandle.CURRENT);
+    /**
+     * Loads the table from device protected storage into memory, commits the default
+     * table and captures the user's refresh rates, so the first foreground app after
+     * unlock needs no parsing.
+     */
+    public static void preload(Context context) {
+        final RefreshUtils utils = new RefreshUtils(context.createDeviceProtectedStorageContext());
+        if (utils.mSharedPrefs.getString(REFRESH_CONTROL, null) == null) {
+            utils.mSharedPrefs.edit().putString(REFRESH_CONTROL,
+                    REFRESH_STANDARD + ":" + REFRESH_EXTREME + ":" + REFRESH_LAND).commit();
+        }
+        utils.getStates();
+        utils.getOldRate();
     }
 
     private void writeValue(String profiles) {
         mSharedPrefs.edit().putString(REFRESH_CONTROL, profiles).apply();
+        synchronized (RefreshUtils.class) {
+            sStates = ProfileTable.parse(profiles);
+        }
+    }
+
+    private Map<String, Integer> getStates() {
+        synchronized (RefreshUtils.class) {
+            if (sStates == null) {
+                sStates = ProfileTable.parse(getValue());
+            }
+            return sStates;
+        }
     }
 
     protected void getOldRate(){
@@ -85,71 +112,40 @@ public final class RefreshUtils {
         return Settings.System.getFloat(mContext.getContentResolver(), KEY_MIN_REFRESH_RATE, REFRESH_STATE_DEFAULT);
     }
     
-    private void initializeOrientationListener(String packageName) {
-        if (orientationListener != null) {
-            orientationListener.disable();
-        }
-
-        orientationListener = new OrientationEventListener(mContext) {
-            @Override
-            public void onOrientationChanged(int orientation) {
-                if (orientation == ORIENTATION_UNKNOWN) {
-                    return;
-                }
-
-                int currentOrientation = mContext.getResources().getConfiguration().orientation;
-                boolean newIsLandscape = (currentOrientation == Configuration.ORIENTATION_LANDSCAPE);
-                if (newIsLandscape != isLandscape) {
-                    isLandscape = newIsLandscape;
-                    adjustRefreshRateForOrientation(packageName);
-                }
-            }
-        };
-
-        if (orientationListener.canDetectOrientation()) {
-            orientationListener.enable();
-        } else {
-            orientationListener.disable();
+    private void putRefreshRates(String subject, float minRate, float maxRate) {
+        if (getUserMinRefreshRate() == minRate && getUserMaxRefreshRate() == maxRate) {
+            sLog.recordSkip();
+            return;
         }
-    }
-
-    private void adjustRefreshRateForOrientation(String packageName) {
-        float minRate = defaultMinRate;
-        float maxRate = isLandscape && isAppInList ? REFRESH_STATE_LAND : REFRESH_STATE_EXTREME;
-        setRefreshRate(minRate, maxRate);
-    }
-
-    protected void checkOrientationAndSetRate(String packageName) {
-        int currentOrientation = mContext.getResources().getConfiguration().orientation;
-        boolean isCurrentlyLandscape = (currentOrientation == Configuration.ORIENTATION_LANDSCAPE);
-        float currentMaxRate = Settings.System.getFloat(mContext.getContentResolver(), KEY_PEAK_REFRESH_RATE, REFRESH_STATE_DEFAULT);
-
-        if (isCurrentlyLandscape && isAppInList) {
-            setLandscapeModeRefreshRate();
-        } else if (!isCurrentlyLandscape && isAppInList) {
-            setPortraitModeRefreshRate();
+        TraceUtils.beginSection("RefreshUtils#putRefreshRates");
+        final boolean success =
+                Settings.System.putFloat(mContext.getContentResolver(), KEY_MIN_REFRESH_RATE, minRate)
+                && Settings.System.putFloat(mContext.getContentResolver(), KEY_PEAK_REFRESH_RATE, maxRate);
+        TraceUtils.endSection();
+        sLog.recordWrite(subject, minRate + "-" + maxRate + "Hz", success);
+        TraceUtils.setCounter(TraceUtils.COUNTER_MIN_REFRESH_RATE, (long) minRate);
+        TraceUtils.setCounter(TraceUtils.COUNTER_PEAK_REFRESH_RATE, (long) maxRate);
+    }
+
+    /**
+     * Forgets the parsed table and the captured user rates, so every test starts afresh.
+     */
+    @VisibleForTesting
+    static void reset() {
+        synchronized (RefreshUtils.class) {
+            sStates = null;
         }
+        isAppInList = false;
+        defaultMinRate = 0;
+        defaultMaxRate = 0;
     }
 
-    private void setLandscapeModeRefreshRate() {
-        Settings.System.putFloat(mContext.getContentResolver(), KEY_PEAK_REFRESH_RATE, REFRESH_STATE_LAND);
-        Settings.System.putFloat(mContext.getContentResolver(), KEY_MIN_REFRESH_RATE, REFRESH_STATE_LAND);
-    }
-
-    private void setPortraitModeRefreshRate() {
-        Settings.System.putFloat(mContext.getContentResolver(), KEY_PEAK_REFRESH_RATE, REFRESH_STATE_EXTREME);
-        Settings.System.putFloat(mContext.getContentResolver(), KEY_MIN_REFRESH_RATE, REFRESH_STATE_EXTREME);
-    }
-
-    private void setRefreshRate(float minRate, float maxRate) {
-        if (minRate > maxRate) {
-            minRate = maxRate;
-        }
-        Settings.System.putFloat(mContext.getContentResolver(), KEY_MIN_REFRESH_RATE, minRate);
-        Settings.System.putFloat(mContext.getContentResolver(), KEY_PEAK_REFRESH_RATE, maxRate);
+    protected static void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "appInList=" + isAppInList + " userRates=" + defaultMinRate
+                + "-" + defaultMaxRate + "Hz");
+        sLog.dump(pw, prefix);
     }
 
-
     private String getValue() {
         String value = mSharedPrefs.getString(REFRESH_CONTROL, null);
 
@@ -193,45 +189,22 @@ public final class RefreshUtils {
         finalString = modes[0] + ":" + modes[1] + ":" + modes[2];
 
         writeValue(finalString);
+        PolicyUtils.checkService(mContext);
     }
 
-    protected int getStateForPackage(String packageName) {
-        String value = getValue();
-        String[] modes = value.split(":");
-        int state = STATE_DEFAULT;
-        if (modes[0].contains(packageName + ",")) {
-            state = STATE_STANDARD;
-        } else if (modes[1].contains(packageName + ",")) {
-            state = STATE_EXTREME;
-        } else if (modes[2].contains(packageName + ",")) {
-            state = STATE_LAND;
-        }
-        return state;
+    protected boolean hasProfiles() {
+        return !getStates().isEmpty();
     }
 
-    protected void setRefreshRate(String packageName) {
-        String value = getValue();
-        String[] modes = value.split(":");
-        float maxRate = defaultMaxRate;
-        float minRate = defaultMinRate;
-        isAppInList = false;
+    protected int getStateForPackage(String packageName) {
+        return RefreshPolicy.getState(getStates(), packageName);
+    }
 
-        if (value != null) {
-            modes = value.split(":");
-
-            if (modes[0].contains(packageName + ",")) {
-                maxRate = REFRESH_STATE_STANDARD;
-                isAppInList = true;
-            } else if (modes[1].contains(packageName + ",")) {
-                maxRate = REFRESH_STATE_EXTREME;
-                isAppInList = true;
-            } else if (modes[2].contains(packageName + ",")) {
-                initializeOrientationListener(packageName);
-                isAppInList = true;
-                return;
-            }
-        }
-	    Settings.System.putFloat(mContext.getContentResolver(), KEY_MIN_REFRESH_RATE, minRate);
-        Settings.System.putFloat(mContext.getContentResolver(), KEY_PEAK_REFRESH_RATE, maxRate);
+    protected void setRefreshRate(String packageName, boolean isLandscape) {
+        final int state = getStateForPackage(packageName);
+        isAppInList = RefreshPolicy.hasProfile(state);
+        putRefreshRates(packageName,
+                RefreshPolicy.getMinRate(state, isLandscape, defaultMinRate),
+                RefreshPolicy.getMaxRate(state, isLandscape, defaultMaxRate));
     }
 }
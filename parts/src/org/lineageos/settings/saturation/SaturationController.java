@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.saturation;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+
+import androidx.preference.PreferenceManager;
+
+import org.lineageos.settings.Constants;
+import org.lineageos.settings.policy.PolicyController;
+
+import java.io.PrintWriter;
+
+public class SaturationController implements PolicyController {
+
+    private String mCurrentApp = "";
+    private SaturationUtils mSaturationUtils;
+    private SharedPreferences mSharedPrefs;
+    private Handler mHandler;
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
+            (prefs, key) -> {
+                if (Constants.KEY_SATURATION.equals(key)
+                        || SaturationUtils.SATURATION_CONTROL.equals(key)) {
+                    mHandler.post(this::setSaturation);
+                }
+            };
+
+    @Override
+    public String getName() {
+        return "saturation";
+    }
+
+    @Override
+    public boolean isEnabled(Context context) {
+        return new SaturationUtils(context).hasProfiles();
+    }
+
+    @Override
+    public void onStart(Context context, Handler handler) {
+        mHandler = handler;
+        mSaturationUtils = new SaturationUtils(context);
+        mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        mSharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
+    }
+
+    @Override
+    public void onStop() {
+        mSharedPrefs.unregisterOnSharedPreferenceChangeListener(mPrefListener);
+        // Hand the display back to the global slider value
+        SaturationUtils.applySaturationIfChanged(mSaturationUtils.getDefaultSaturation());
+        mSaturationUtils = null;
+        mCurrentApp = "";
+    }
+
+    @Override
+    public void onForegroundAppChanged(String packageName) {
+        mCurrentApp = packageName;
+        setSaturation();
+    }
+
+    @Override
+    public void dump(PrintWriter pw) {
+        pw.println("  currentApp=" + mCurrentApp);
+        if (mSaturationUtils != null && !mCurrentApp.isEmpty()) {
+            pw.println("  profile=" + mSaturationUtils.getStateForPackage(mCurrentApp));
+        }
+        SaturationUtils.dump(pw, "  ");
+    }
+
+    private void setSaturation() {
+        if (mSaturationUtils == null || mCurrentApp.isEmpty()) {
+            return;
+        }
+        SaturationUtils.applySaturationIfChanged(
+                mSaturationUtils.getSaturationForPackage(mCurrentApp));
+    }
+}
@@ -18,10 +18,6 @@ package org.lineageos.settings.saturation
 
 import android.content.Context
 import android.os.Bundle
-import android.os.IBinder
-import android.os.Parcel
-import android.os.RemoteException
-import android.os.ServiceManager
 import android.view.Menu
 import android.view.MenuInflater
 import android.view.MenuItem
@@ -47,7 +43,6 @@ class SaturationFragment : PreferenceFragmentCompat(), Preference.OnPreferenceCh
     private var mDotIndicators: Array<ImageView>? = null
     private var mViewPagerImages: Array<View?>? = null
     private var mSaturationPreference: CustomSeekBarPreference? = null
-    private var mSurfaceFlinger: IBinder? = null
 
     override fun onCreatePreferences(savedInstanceState: Bundle?, rootKey: String?) {
         setPreferencesFromResource(R.xml.saturation, rootKey)
@@ -60,8 +55,9 @@ class SaturationFragment : PreferenceFragmentCompat(), Preference.OnPreferenceCh
         mSaturationPreference = findPreference(Constants.KEY_SATURATION)
         mSaturationPreference?.setOnPreferenceChangeListener(this)
 
+        // Always resend on open, a color mode change may have reset SurfaceFlinger
         val seekBarValue = sharedPrefs?.getInt(Constants.KEY_SATURATION, 100) ?: 100
-        updateSaturation(seekBarValue)
+        SaturationUtils.applySaturation(seekBarValue)
     }
 
     override fun onCreateOptionsMenu(menu: Menu, inflater: MenuInflater) {
@@ -92,23 +88,7 @@ class SaturationFragment : PreferenceFragmentCompat(), Preference.OnPreferenceCh
     }
 
     private fun updateSaturation(seekBarValue: Int) {
-        val saturation = if (seekBarValue == 100) 1.001f else seekBarValue / 100.0f
-        mSurfaceFlinger?.let {
-            try {
-                val data = Parcel.obtain()
-                data.writeInterfaceToken("android.ui.ISurfaceComposer")
-                data.writeFloat(saturation)
-                it.transact(1022, data, null, 0)
-                data.recycle()
-            } catch (e: RemoteException) {
-                e.printStackTrace()
-            }
-        }
-    }
-
-    override fun onAttach(context: Context) {
-        super.onAttach(context)
-        mSurfaceFlinger = ServiceManager.getService("SurfaceFlinger")
+        SaturationUtils.applySaturationIfChanged(seekBarValue)
     }
 
     fun restoreSaturationSetting(context: Context) {
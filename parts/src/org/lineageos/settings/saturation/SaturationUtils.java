@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.saturation;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.Process;
+import android.os.RemoteException;
+import android.os.ServiceManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.preference.PreferenceManager;
+
+import org.lineageos.settings.Constants;
+import org.lineageos.settings.policy.PolicyUtils;
+import org.lineageos.settings.policy.core.ProfileTable;
+import org.lineageos.settings.utils.TraceUtils;
+import org.lineageos.settings.utils.TransitionLog;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+public final class SaturationUtils {
+
+    private static final String TAG = "SaturationUtils";
+    private static final boolean DEBUG = false;
+
+    protected static final String SATURATION_CONTROL = "saturation_control";
+
+    private static final String SURFACE_FLINGER = "SurfaceFlinger";
+    private static final String SURFACE_COMPOSER = "android.ui.ISurfaceComposer";
+    private static final int SURFACE_FLINGER_SET_SATURATION = 1022;
+
+    protected static final int STATE_DEFAULT = 0;
+    protected static final int STATE_MUTED = 1;
+    protected static final int STATE_VIVID = 2;
+    protected static final int STATE_BOOSTED = 3;
+
+    protected static final int SATURATION_DEFAULT = 100;
+    private static final int SATURATION_MUTED = 70;
+    private static final int SATURATION_VIVID = 125;
+    private static final int SATURATION_BOOSTED = 150;
+
+    private static final String SATURATION_MUTED_KEY = "saturation.muted=";
+    private static final String SATURATION_VIVID_KEY = "saturation.vivid=";
+    private static final String SATURATION_BOOSTED_KEY = "saturation.boosted=";
+
+    // Boot time readiness polling, doubling from the initial delay up to the cap
+    private static final long BOOT_RETRY_INITIAL_DELAY_MS = 50;
+    private static final long BOOT_RETRY_MAX_DELAY_MS = 1000;
+    private static final long BOOT_RETRY_TIMEOUT_MS = 30000;
+
+    // Last value accepted by SurfaceFlinger, shared by every caller in the process
+    private static int sAppliedValue = -1;
+    // Last value handed to SurfaceFlinger, set before the transaction is sent
+    private static int sRequestedValue = -1;
+    // Bumped before every transaction, orders concurrent callers
+    private static int sRequestGeneration = 0;
+    // Request generation of the last accepted value, lets the boot path notice it
+    // was superseded
+    private static int sApplyGeneration = 0;
+
+    // Boot readiness polling, shared by every boot request in the process
+    private static Handler sBootHandler;
+
+    // Time from the boot request until SurfaceFlinger accepted the value, -1 if never
+    private static long sBootApplyLatencyMs = -1;
+
+    // Parsed saturation_control table, shared by every instance in the process
+    private static Map<String, Integer> sStates;
+
+    private static final TransitionLog sLog = new TransitionLog(32);
+
+    private Context mContext;
+    private SharedPreferences mSharedPrefs;
+
+    protected SaturationUtils(Context context) {
+        mContext = context;
+        mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+    }
+
+    /**
+     * Loads the table from device protected storage into memory and commits the
+     * default table, so the first foreground app after unlock needs no parsing.
+     */
+    public static void preload(Context context) {
+        final SaturationUtils utils =
+                new SaturationUtils(context.createDeviceProtectedStorageContext());
+        if (utils.mSharedPrefs.getString(SATURATION_CONTROL, null) == null) {
+            utils.mSharedPrefs.edit().putString(SATURATION_CONTROL, getDefaultValue()).commit();
+        }
+        utils.getStates();
+    }
+
+    private static String getDefaultValue() {
+        return SATURATION_MUTED_KEY + ":" + SATURATION_VIVID_KEY + ":" + SATURATION_BOOSTED_KEY;
+    }
+
+    private void writeValue(String profiles) {
+        mSharedPrefs.edit().putString(SATURATION_CONTROL, profiles).apply();
+        synchronized (SaturationUtils.class) {
+            sStates = ProfileTable.parse(profiles);
+        }
+    }
+
+    private Map<String, Integer> getStates() {
+        synchronized (SaturationUtils.class) {
+            if (sStates == null) {
+                sStates = ProfileTable.parse(getValue());
+            }
+            return sStates;
+        }
+    }
+
+    private String getValue() {
+        String value = mSharedPrefs.getString(SATURATION_CONTROL, null);
+
+        if (value == null || value.isEmpty()) {
+            value = getDefaultValue();
+            writeValue(value);
+        }
+        return value;
+    }
+
+    protected void writePackage(String packageName, int mode) {
+        String value = getValue();
+        value = value.replace(packageName + ",", "");
+        String[] modes = value.split(":");
+        String finalString;
+
+        switch (mode) {
+            case STATE_MUTED:
+                modes[0] = modes[0] + packageName + ",";
+                break;
+            case STATE_VIVID:
+                modes[1] = modes[1] + packageName + ",";
+                break;
+            case STATE_BOOSTED:
+                modes[2] = modes[2] + packageName + ",";
+                break;
+        }
+
+        finalString = modes[0] + ":" + modes[1] + ":" + modes[2];
+
+        writeValue(finalString);
+        PolicyUtils.checkService(mContext);
+    }
+
+    protected boolean hasProfiles() {
+        return !getStates().isEmpty();
+    }
+
+    protected int getStateForPackage(String packageName) {
+        return getStates().getOrDefault(packageName, STATE_DEFAULT);
+    }
+
+    protected int getDefaultSaturation() {
+        return mSharedPrefs.getInt(Constants.KEY_SATURATION, SATURATION_DEFAULT);
+    }
+
+    /**
+     * Resolves the seekbar value that should be active while the given package is
+     * in the foreground. Apps without an assignment follow the global slider.
+     */
+    protected int getSaturationForPackage(String packageName) {
+        switch (getStateForPackage(packageName)) {
+            case STATE_MUTED:
+                return SATURATION_MUTED;
+            case STATE_VIVID:
+                return SATURATION_VIVID;
+            case STATE_BOOSTED:
+                return SATURATION_BOOSTED;
+            case STATE_DEFAULT:
+            default:
+                return getDefaultSaturation();
+        }
+    }
+
+    /**
+     * Applies the saved global saturation as soon as SurfaceFlinger is able to accept it.
+     * Readiness is polled on a private thread with a bounded exponential backoff, so the
+     * caller returns immediately. The thread is shared, a new request replaces the polling
+     * of an earlier one. If a value was already applied, e.g. a per-app one from
+     * SaturationController, that value is resent instead, and polling stops as soon as
+     * anyone else gets a value accepted in the meantime.
+     */
+    public static void applySavedSaturationWhenReady(Context context) {
+        final int savedValue = PreferenceManager.getDefaultSharedPreferences(context)
+                .getInt(Constants.KEY_SATURATION, SATURATION_DEFAULT);
+        final int generation;
+        final Handler handler;
+        synchronized (SaturationUtils.class) {
+            generation = sApplyGeneration;
+            if (sBootHandler == null) {
+                final HandlerThread thread =
+                        new HandlerThread(TAG, Process.THREAD_PRIORITY_FOREGROUND);
+                thread.start();
+                sBootHandler = new Handler(thread.getLooper());
+            }
+            handler = sBootHandler;
+        }
+        final long start = SystemClock.elapsedRealtime();
+
+        // A newer boot request replaces any polling that is still pending
+        handler.removeCallbacksAndMessages(null);
+        handler.post(new Runnable() {
+            private long mDelay = BOOT_RETRY_INITIAL_DELAY_MS;
+            private int mAttempts = 0;
+
+            @Override
+            public void run() {
+                mAttempts++;
+                final long elapsed = SystemClock.elapsedRealtime() - start;
+                final int seekBarValue;
+                synchronized (SaturationUtils.class) {
+                    if (sApplyGeneration != generation) {
+                        if (DEBUG) Log.d(TAG, "Boot saturation superseded by " + sAppliedValue);
+                        return;
+                    }
+                    seekBarValue = sAppliedValue >= 0 ? sAppliedValue : savedValue;
+                }
+                boolean applied = false;
+                if (isSurfaceFlingerReady()) {
+                    final int request;
+                    synchronized (SaturationUtils.class) {
+                        request = beginRequest(seekBarValue);
+                    }
+                    applied = transact(seekBarValue);
+                    final int newest;
+                    synchronized (SaturationUtils.class) {
+                        newest = finishRequest(request, seekBarValue, applied)
+                                ? -1 : sRequestedValue;
+                        if (applied) {
+                            sBootApplyLatencyMs = elapsed;
+                        }
+                    }
+                    if (applied && newest >= 0) {
+                        // Another value was sent while ours was in flight and may have
+                        // reached SurfaceFlinger first, make sure the newest one wins
+                        if (DEBUG) Log.d(TAG, "Boot saturation raced, resending " + newest);
+                        applySaturation(newest);
+                    }
+                }
+                if (applied) {
+                    Log.i(TAG, "Applied boot saturation " + seekBarValue + " after " + elapsed
+                            + " ms (" + mAttempts + " attempts, "
+                            + SystemClock.elapsedRealtime() + " ms since boot)");
+                } else if (elapsed + mDelay > BOOT_RETRY_TIMEOUT_MS) {
+                    Log.e(TAG, "SurfaceFlinger not ready after " + elapsed
+                            + " ms, giving up on boot saturation");
+                } else {
+                    handler.postDelayed(this, mDelay);
+                    mDelay = Math.min(mDelay * 2, BOOT_RETRY_MAX_DELAY_MS);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return time in milliseconds the boot path needed to apply saturation, -1 if it
+     *         has not (yet) succeeded
+     */
+    public static long getBootApplyLatencyMs() {
+        synchronized (SaturationUtils.class) {
+            return sBootApplyLatencyMs;
+        }
+    }
+
+    private static boolean isSurfaceFlingerReady() {
+        // checkService() does not block, unlike getService()
+        IBinder surfaceFlinger = ServiceManager.checkService(SURFACE_FLINGER);
+        return surfaceFlinger != null && surfaceFlinger.pingBinder();
+    }
+
+    /**
+     * Applies the given seekbar value unless it is the one SurfaceFlinger already has.
+     *
+     * @return true if a transaction was sent and accepted
+     */
+    public static boolean applySaturationIfChanged(int seekBarValue) {
+        synchronized (SaturationUtils.class) {
+            if (seekBarValue == sAppliedValue) {
+                if (DEBUG) Log.d(TAG, "Saturation " + seekBarValue + " already applied");
+                sLog.recordSkip();
+                return false;
+            }
+        }
+        return applySaturation(seekBarValue);
+    }
+
+    /**
+     * Sends the given seekbar value (0-200, 100 being neutral) to SurfaceFlinger.
+     *
+     * @return true on success, false on failure
+     */
+    public static boolean applySaturation(int seekBarValue) {
+        final int request;
+        synchronized (SaturationUtils.class) {
+            request = beginRequest(seekBarValue);
+        }
+        // The binder call is made without the lock, it may block on SurfaceFlinger
+        final boolean success = transact(seekBarValue);
+        synchronized (SaturationUtils.class) {
+            finishRequest(request, seekBarValue, success);
+        }
+        if (success && DEBUG) Log.d(TAG, "Applied saturation " + seekBarValue);
+        return success;
+    }
+
+    /**
+     * Records a value about to be sent. Must be called with the class lock held.
+     *
+     * @return generation of the request, to be passed to {@link #finishRequest}
+     */
+    private static int beginRequest(int seekBarValue) {
+        sRequestedValue = seekBarValue;
+        return ++sRequestGeneration;
+    }
+
+    /**
+     * Records the result of a request. Must be called with the class lock held.
+     *
+     * @return false if a newer request was started while this one was in flight
+     */
+    private static boolean finishRequest(int request, int seekBarValue, boolean success) {
+        final boolean newest = request == sRequestGeneration;
+        // An older request completing late must not hide the newer value
+        if (success && request > sApplyGeneration) {
+            sAppliedValue = seekBarValue;
+            sApplyGeneration = request;
+        }
+        return newest;
+    }
+
+    private static boolean transact(int seekBarValue) {
+        final float saturation = seekBarValue == 100 ? 1.001f : seekBarValue / 100.0f;
+
+        IBinder surfaceFlinger = ServiceManager.getService(SURFACE_FLINGER);
+        if (surfaceFlinger == null) {
+            Log.e(TAG, "SurfaceFlinger service not found");
+            sLog.recordWrite(null, String.valueOf(seekBarValue), false);
+            return false;
+        }
+
+        Parcel data = Parcel.obtain();
+        TraceUtils.beginSection("SaturationUtils#applySaturation");
+        try {
+            data.writeInterfaceToken(SURFACE_COMPOSER);
+            data.writeFloat(saturation);
+            surfaceFlinger.transact(SURFACE_FLINGER_SET_SATURATION, data, null, 0);
+        } catch (RemoteException e) {
+            Log.e(TAG, "Failed to apply saturation", e);
+            sLog.recordWrite(null, String.valueOf(seekBarValue), false);
+            return false;
+        } finally {
+            data.recycle();
+            TraceUtils.endSection();
+        }
+        TraceUtils.setCounter(TraceUtils.COUNTER_SATURATION, seekBarValue);
+        sLog.recordWrite(null, String.valueOf(seekBarValue), true);
+        return true;
+    }
+
+    protected static void dump(PrintWriter pw, String prefix) {
+        synchronized (SaturationUtils.class) {
+            pw.println(prefix + "applied=" + sAppliedValue + " requested=" + sRequestedValue
+                    + " bootApplyLatencyMs=" + sBootApplyLatencyMs);
+        }
+        sLog.dump(pw, prefix);
+    }
+}
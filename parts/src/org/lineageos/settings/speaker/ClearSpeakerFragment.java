@@ -16,16 +16,12 @@
 
 package org.lineageos.settings.speaker;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.res.AssetFileDescriptor;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.media.AudioManager;
-import android.media.AudioAttributes;
-import android.media.MediaPlayer;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
-import android.util.Log;
 
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragment;
@@ -33,8 +29,6 @@ import androidx.preference.SwitchPreference;
 
 import org.lineageos.settings.R;
 
-import java.io.IOException;
-
 public class ClearSpeakerFragment extends PreferenceFragment implements
         Preference.OnPreferenceChangeListener {
 
@@ -42,11 +36,15 @@ public class ClearSpeakerFragment extends PreferenceFragment implements
 
     private static final String PREF_CLEAR_SPEAKER = "clear_speaker_pref";
 
-    private AudioManager mAudioManager;
-    private Handler mHandler;
-    private MediaPlayer mMediaPlayer;
     private SwitchPreference mClearSpeakerPref;
 
+    private final BroadcastReceiver mStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mClearSpeakerPref.setChecked(ClearSpeakerService.isRunning());
+        }
+    };
+
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
         addPreferencesFromResource(R.xml.clear_speaker_settings);
@@ -54,68 +52,37 @@ public class ClearSpeakerFragment extends PreferenceFragment implements
         mClearSpeakerPref = (SwitchPreference) findPreference(PREF_CLEAR_SPEAKER);
         mClearSpeakerPref.setOnPreferenceChangeListener(this);
 
-        mHandler = new Handler();
-        mAudioManager = (AudioManager) getContext().getSystemService(Context.AUDIO_SERVICE);
+        getActivity().setVolumeControlStream(AudioManager.STREAM_MUSIC);
     }
 
     @Override
-    public boolean onPreferenceChange(Preference preference, Object newValue) {
-        if (preference == mClearSpeakerPref) {
-            boolean value = (Boolean) newValue;
-            if (value) {
-                if (startPlaying()) {
-                    mHandler.removeCallbacksAndMessages(null);
-                    mHandler.postDelayed(() -> {
-                        stopPlaying();
-                    }, 30000);
-                    return true;
-                }
-            }
-        }
-        return false;
+    public void onResume() {
+        super.onResume();
+        // The program keeps running in the service while this screen is gone
+        getContext().registerReceiver(mStateReceiver,
+                new IntentFilter(ClearSpeakerService.ACTION_STATE_CHANGED),
+                Context.RECEIVER_NOT_EXPORTED);
+        mClearSpeakerPref.setChecked(ClearSpeakerService.isRunning());
     }
 
     @Override
-    public void onStop() {
-        super.onStop();
-        stopPlaying();
+    public void onPause() {
+        super.onPause();
+        getContext().unregisterReceiver(mStateReceiver);
     }
 
-    public boolean startPlaying() {
-        mAudioManager.setParameters("status_earpiece_clean=on");
-        mMediaPlayer = new MediaPlayer();
-        getActivity().setVolumeControlStream(AudioManager.STREAM_MUSIC);
-        mMediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-        mMediaPlayer.setLooping(true);
-        try {
-            AssetFileDescriptor file = getResources().openRawResourceFd(R.raw.clear_speaker_sound);
-            try {
-                mMediaPlayer.setDataSource(file.getFileDescriptor(), file.getStartOffset(), file.getLength());
-            } finally {
-                file.close();
-            }
-            mClearSpeakerPref.setEnabled(false);
-            mMediaPlayer.setVolume(1.0f, 1.0f);
-            mMediaPlayer.prepare();
-            mMediaPlayer.start();
-        } catch (IOException ioe) {
-            Log.e(TAG, "Failed to play speaker clean sound!", ioe);
-            return false;
-        }
-        return true;
-    }
-
-    public void stopPlaying() {
-        if (mMediaPlayer != null) {
-            if (mMediaPlayer.isPlaying()) {
-                mMediaPlayer.stop();
-                mMediaPlayer.reset();
-                mMediaPlayer.release();
-                mMediaPlayer=null;
+    @Override
+    public boolean onPreferenceChange(Preference preference, Object newValue) {
+        if (preference == mClearSpeakerPref) {
+            final Intent intent = new Intent(getContext(), ClearSpeakerService.class);
+            if ((Boolean) newValue) {
+                getContext().startForegroundService(
+                        intent.setAction(ClearSpeakerService.ACTION_START));
+            } else {
+                getContext().startService(intent.setAction(ClearSpeakerService.ACTION_STOP));
             }
+            return true;
         }
-        mAudioManager.setParameters("status_earpiece_clean=off");
-        mClearSpeakerPref.setEnabled(true);
-        mClearSpeakerPref.setChecked(false);
+        return false;
     }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.speaker;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Process;
+import android.util.Log;
+
+import org.lineageos.settings.R;
+
+/**
+ * Plays the speaker cleaning tone. One period of the pattern is synthesized up front
+ * into a PCM buffer, which a streaming low latency AudioTrack then plays in a loop, so
+ * starting does not decode or allocate anything.
+ *
+ * Every channel plays a linear frequency sweep for the duty cycle part of the period
+ * and stays silent for the rest. The left channel is tuned for the bottom speaker and
+ * the right one for the earpiece, which the audio HAL uses as the second speaker while
+ * status_earpiece_clean is on.
+ */
+public class ClearSpeakerPlayer {
+    private static final String TAG = "ClearSpeakerPlayer";
+    private static final boolean DEBUG = false;
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int CHANNELS = 2;
+    // Fade in and out of every burst, so its edges do not click
+    private static final int FADE_MS = 5;
+
+    private final short[] mBuffer;
+
+    private AudioTrack mAudioTrack;
+    private Thread mThread;
+    private volatile boolean mPlaying;
+
+    public ClearSpeakerPlayer(Context context) {
+        final Resources res = context.getResources();
+        final int periodFrames = SAMPLE_RATE
+                * res.getInteger(R.integer.config_clearSpeakerPeriodMs) / 1000;
+        final float amplitude = res.getInteger(R.integer.config_clearSpeakerAmplitudePercent)
+                / 100f * Short.MAX_VALUE;
+        mBuffer = new short[periodFrames * CHANNELS];
+        synthesize(0, res.getIntArray(R.array.config_clearSpeakerSpeakerTone), amplitude);
+        synthesize(1, res.getIntArray(R.array.config_clearSpeakerEarpieceTone), amplitude);
+    }
+
+    /**
+     * Fills one channel of the buffer.
+     *
+     * @param tone start frequency in Hz, end frequency in Hz and duty cycle in percent
+     */
+    private void synthesize(int channel, int[] tone, float amplitude) {
+        final int periodFrames = mBuffer.length / CHANNELS;
+        final int burstFrames = periodFrames * tone[2] / 100;
+        final int fadeFrames = Math.min(SAMPLE_RATE * FADE_MS / 1000, burstFrames / 2);
+        final double startHz = tone[0];
+        final double sweepHzPerSecond = burstFrames > 0
+                ? (tone[1] - tone[0]) / ((double) burstFrames / SAMPLE_RATE) : 0;
+
+        for (int i = 0; i < burstFrames; i++) {
+            final double t = (double) i / SAMPLE_RATE;
+            // Phase of a linear chirp, the integral of its instantaneous frequency
+            final double phase = 2 * Math.PI * (startHz * t + sweepHzPerSecond * t * t / 2);
+            double gain = amplitude;
+            if (i < fadeFrames) {
+                gain *= (double) i / fadeFrames;
+            } else if (i >= burstFrames - fadeFrames) {
+                gain *= (double) (burstFrames - i) / fadeFrames;
+            }
+            mBuffer[i * CHANNELS + channel] = (short) (Math.sin(phase) * gain);
+        }
+        // The rest of the period stays silent
+    }
+
+    /**
+     * Starts looping the tone, does nothing if it is already playing.
+     *
+     * @return false if no audio track could be set up
+     */
+    public boolean start() {
+        if (mPlaying) {
+            return true;
+        }
+        if (mAudioTrack == null) {
+            try {
+                mAudioTrack = createAudioTrack();
+            } catch (UnsupportedOperationException e) {
+                Log.e(TAG, "Failed to create audio track", e);
+                return false;
+            }
+        }
+        if (DEBUG) Log.d(TAG, "Starting");
+        mAudioTrack.play();
+        mPlaying = true;
+        mThread = new Thread(this::writeLoop, TAG);
+        mThread.start();
+        return true;
+    }
+
+    /**
+     * Stops the tone, the player can be started again afterwards.
+     */
+    public void stop() {
+        if (!mPlaying) {
+            return;
+        }
+        if (DEBUG) Log.d(TAG, "Stopping");
+        mPlaying = false;
+        // Unblocks the pending write
+        mAudioTrack.pause();
+        mAudioTrack.flush();
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+    }
+
+    public boolean isPlaying() {
+        return mPlaying;
+    }
+
+    /**
+     * Stops the tone and frees the audio track.
+     */
+    public void release() {
+        stop();
+        if (mAudioTrack != null) {
+            mAudioTrack.release();
+            mAudioTrack = null;
+        }
+    }
+
+    private AudioTrack createAudioTrack() {
+        final AudioFormat format = new AudioFormat.Builder()
+                .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                .setSampleRate(SAMPLE_RATE)
+                .setChannelMask(AudioFormat.CHANNEL_OUT_STEREO)
+                .build();
+        final int minBufferSize = AudioTrack.getMinBufferSize(SAMPLE_RATE,
+                AudioFormat.CHANNEL_OUT_STEREO, AudioFormat.ENCODING_PCM_16BIT);
+        return new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                        .build())
+                .setAudioFormat(format)
+                .setBufferSizeInBytes(minBufferSize)
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                .build();
+    }
+
+    private void writeLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        final AudioTrack track = mAudioTrack;
+        int offset = 0;
+        while (mPlaying) {
+            final int written = track.write(mBuffer, offset, mBuffer.length - offset,
+                    AudioTrack.WRITE_BLOCKING);
+            if (written < 0) {
+                Log.e(TAG, "Failed to write audio: " + written);
+                break;
+            }
+            offset = (offset + written) % mBuffer.length;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.speaker;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources;
+import android.media.AudioManager;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.lineageos.settings.R;
+
+/**
+ * Runs a speaker cleaning program independently of the settings screen. The program
+ * alternates play and rest phases, so the coils get time to cool down, and shows its
+ * progress in a notification. The earpiece clean audio parameter is turned off again on
+ * every way out, including the process being killed, see {@link #resetAudioParameter}.
+ */
+public class ClearSpeakerService extends Service {
+    private static final String TAG = "ClearSpeakerService";
+    private static final boolean DEBUG = false;
+
+    protected static final String ACTION_START = "org.lineageos.settings.speaker.START";
+    protected static final String ACTION_STOP = "org.lineageos.settings.speaker.STOP";
+    // Sent to this package whenever a program starts or ends
+    protected static final String ACTION_STATE_CHANGED =
+            "org.lineageos.settings.speaker.STATE_CHANGED";
+
+    private static final String CHANNEL_ID = "clear_speaker";
+    private static final int NOTIFICATION_ID = 1;
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private static final String PARAM_EARPIECE_CLEAN_ON = "status_earpiece_clean=on";
+    private static final String PARAM_EARPIECE_CLEAN_OFF = "status_earpiece_clean=off";
+
+    private static volatile boolean sRunning;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private AudioManager mAudioManager;
+    private NotificationManager mNotificationManager;
+    private Notification.Builder mNotificationBuilder;
+    private ClearSpeakerPlayer mPlayer;
+
+    private int mCycles;
+    private long mPlayMs;
+    private long mRestMs;
+
+    private int mCycle;
+    private boolean mPlaying;
+    private long mStartTime;
+
+    private final Runnable mNextPhase = this::nextPhase;
+    private final Runnable mUpdateProgress = this::updateProgress;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mAudioManager = getSystemService(AudioManager.class);
+        mNotificationManager = getSystemService(NotificationManager.class);
+
+        final Resources res = getResources();
+        mCycles = res.getInteger(R.integer.config_clearSpeakerCycles);
+        mPlayMs = res.getInteger(R.integer.config_clearSpeakerPlayMs);
+        mRestMs = res.getInteger(R.integer.config_clearSpeakerRestMs);
+        mPlayer = new ClearSpeakerPlayer(this);
+
+        mNotificationManager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                getString(R.string.clear_speaker_title), NotificationManager.IMPORTANCE_LOW));
+        final PendingIntent stopIntent = PendingIntent.getService(this, 0,
+                new Intent(this, ClearSpeakerService.class).setAction(ACTION_STOP),
+                PendingIntent.FLAG_IMMUTABLE);
+        mNotificationBuilder = new Notification.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_clear_speaker)
+                .setContentTitle(getString(R.string.clear_speaker_title))
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .addAction(new Notification.Action.Builder(null,
+                        getString(R.string.clear_speaker_stop), stopIntent).build());
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        final String action = intent != null ? intent.getAction() : null;
+        if (ACTION_START.equals(action)) {
+            startProgram();
+        } else {
+            // Stop requests and restarts after being killed both end the program
+            finish();
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        finish();
+        mPlayer.release();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    protected static boolean isRunning() {
+        return sRunning;
+    }
+
+    /**
+     * Turns the earpiece clean audio parameter off, called when the process starts in
+     * case a previous one died in the middle of a program.
+     */
+    public static void resetAudioParameter(Context context) {
+        context.getSystemService(AudioManager.class).setParameters(PARAM_EARPIECE_CLEAN_OFF);
+    }
+
+    private void startProgram() {
+        if (sRunning) {
+            return;
+        }
+        if (DEBUG) Log.d(TAG, "Starting " + mCycles + " cycles");
+        startForeground(NOTIFICATION_ID, buildNotification(0));
+        setRunning(true);
+        mCycle = 0;
+        mStartTime = SystemClock.elapsedRealtime();
+        if (!startPlaying()) {
+            finish();
+            return;
+        }
+        mHandler.postDelayed(mNextPhase, mPlayMs);
+        mHandler.postDelayed(mUpdateProgress, PROGRESS_INTERVAL_MS);
+    }
+
+    private void nextPhase() {
+        if (mPlaying) {
+            stopPlaying();
+            if (++mCycle >= mCycles) {
+                finish();
+                return;
+            }
+            if (DEBUG) Log.d(TAG, "Resting after cycle " + mCycle);
+            mHandler.postDelayed(mNextPhase, mRestMs);
+        } else {
+            if (!startPlaying()) {
+                finish();
+                return;
+            }
+            mHandler.postDelayed(mNextPhase, mPlayMs);
+        }
+    }
+
+    private boolean startPlaying() {
+        mAudioManager.setParameters(PARAM_EARPIECE_CLEAN_ON);
+        mPlaying = mPlayer.start();
+        if (!mPlaying) {
+            Log.e(TAG, "Failed to play speaker clean sound");
+            mAudioManager.setParameters(PARAM_EARPIECE_CLEAN_OFF);
+        }
+        return mPlaying;
+    }
+
+    private void stopPlaying() {
+        mPlayer.stop();
+        mAudioManager.setParameters(PARAM_EARPIECE_CLEAN_OFF);
+        mPlaying = false;
+    }
+
+    /**
+     * Ends the program, safe to call in any state and more than once.
+     */
+    private void finish() {
+        mHandler.removeCallbacks(mNextPhase);
+        mHandler.removeCallbacks(mUpdateProgress);
+        stopPlaying();
+        if (sRunning) {
+            if (DEBUG) Log.d(TAG, "Finished");
+            setRunning(false);
+            stopForeground(STOP_FOREGROUND_REMOVE);
+        }
+        stopSelf();
+    }
+
+    private void setRunning(boolean running) {
+        sRunning = running;
+        sendBroadcast(new Intent(ACTION_STATE_CHANGED).setPackage(getPackageName()));
+    }
+
+    private void updateProgress() {
+        mNotificationManager.notify(NOTIFICATION_ID,
+                buildNotification(SystemClock.elapsedRealtime() - mStartTime));
+        mHandler.postDelayed(mUpdateProgress, PROGRESS_INTERVAL_MS);
+    }
+
+    private Notification buildNotification(long elapsedMs) {
+        final long totalMs = mCycles * mPlayMs + (mCycles - 1) * mRestMs;
+        return mNotificationBuilder
+                .setContentText(getString(mPlaying || elapsedMs == 0
+                        ? R.string.clear_speaker_playing : R.string.clear_speaker_resting,
+                        Math.min(mCycle + 1, mCycles), mCycles))
+                .setProgress((int) totalMs, (int) Math.min(elapsedMs, totalMs), false)
+                .build();
+    }
+}
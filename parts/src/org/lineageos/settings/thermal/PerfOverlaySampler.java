@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.hardware.display.DisplayManager;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.os.ServiceManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Display;
+
+import org.lineageos.settings.R;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Samples what the performance overlay shows. Every node is opened once and read again
+ * from its start on each sample into a shared byte buffer, and the results land in
+ * arrays sized up front, so sampling does not allocate while the overlay is running.
+ * Only meant to be used from a single thread.
+ */
+public class PerfOverlaySampler {
+    private static final String TAG = "PerfOverlaySampler";
+
+    private static final String CPUFREQ_DIR = "/sys/devices/system/cpu/cpufreq";
+    private static final String GPU_CLOCK = "/sys/class/kgsl/kgsl-3d0/gpuclk";
+    private static final String THERMAL_DIR = "/sys/class/thermal";
+
+    private static final String SURFACE_FLINGER = "SurfaceFlinger";
+    private static final String SURFACE_COMPOSER = "android.ui.ISurfaceComposer";
+    // Returns the number of frames SurfaceFlinger composited so far
+    private static final int SURFACE_FLINGER_GET_PAGE_FLIP_COUNT = 1013;
+
+    private static final int TOP_ZONES = 3;
+
+    private final ThermalUtils mThermalUtils;
+    private final Display mDisplay;
+    private final String[] mProfileNames;
+
+    private final byte[] mReadBuffer = new byte[32];
+
+    private final RandomAccessFile[] mCpuNodes;
+    private final long[] mCpuFreqs;
+    private final RandomAccessFile mGpuNode;
+    private long mGpuFreq;
+    private final RandomAccessFile mSconfigNode;
+    private long mSconfig;
+
+    private final String[] mZoneTypes;
+    private final RandomAccessFile[] mZoneNodes;
+    private final long[] mZoneTemps;
+    private final int[] mTopZones = new int[TOP_ZONES];
+
+    private int mLastPageFlips = -1;
+    private long mLastSampleNanos;
+    private float mFps = -1;
+
+    private String mForegroundApp = "";
+    private int mProfile;
+
+    public PerfOverlaySampler(Context context) {
+        final Resources res = context.getResources();
+        mThermalUtils = new ThermalUtils(context);
+        mDisplay = context.getSystemService(DisplayManager.class)
+                .getDisplay(Display.DEFAULT_DISPLAY);
+        mProfileNames = res.getStringArray(R.array.perf_overlay_thermal_profiles);
+
+        final File[] policies = listSorted(CPUFREQ_DIR, "policy");
+        mCpuNodes = new RandomAccessFile[policies.length];
+        for (int i = 0; i < policies.length; i++) {
+            mCpuNodes[i] = open(new File(policies[i], "scaling_cur_freq"));
+        }
+        mCpuFreqs = new long[mCpuNodes.length];
+        mGpuNode = open(new File(GPU_CLOCK));
+        mSconfigNode = open(new File(ThermalUtils.THERMAL_SCONFIG));
+
+        final String[] prefixes = res.getStringArray(R.array.config_perfOverlayThermalZones);
+        final List<String> types = new ArrayList<>();
+        final List<RandomAccessFile> nodes = new ArrayList<>();
+        for (File zone : listSorted(THERMAL_DIR, "thermal_zone")) {
+            final String type = readText(new File(zone, "type"));
+            if (type == null || !matchesPrefix(type, prefixes)) {
+                continue;
+            }
+            final RandomAccessFile node = open(new File(zone, "temp"));
+            if (node != null) {
+                types.add(type);
+                nodes.add(node);
+            }
+        }
+        mZoneTypes = types.toArray(new String[0]);
+        mZoneNodes = nodes.toArray(new RandomAccessFile[0]);
+        mZoneTemps = new long[mZoneNodes.length];
+    }
+
+    /**
+     * Called from the sampling thread with the app currently in front.
+     */
+    public void setForegroundApp(String packageName) {
+        mForegroundApp = packageName;
+    }
+
+    public void sample() {
+        // Looked up every time, the profile may be changed while the app is in front
+        mProfile = mThermalUtils.getStateForPackage(mForegroundApp);
+        for (int i = 0; i < mCpuNodes.length; i++) {
+            mCpuFreqs[i] = readLong(mCpuNodes[i]);
+        }
+        mGpuFreq = readLong(mGpuNode);
+        mSconfig = readLong(mSconfigNode);
+
+        Arrays.fill(mTopZones, -1);
+        for (int i = 0; i < mZoneNodes.length; i++) {
+            mZoneTemps[i] = readLong(mZoneNodes[i]);
+            // Insertion into the short list of the hottest zones
+            int slot = i;
+            for (int j = 0; j < TOP_ZONES && slot >= 0; j++) {
+                if (mTopZones[j] < 0 || mZoneTemps[slot] > mZoneTemps[mTopZones[j]]) {
+                    final int displaced = mTopZones[j];
+                    mTopZones[j] = slot;
+                    slot = displaced;
+                }
+            }
+        }
+
+        final long now = SystemClock.elapsedRealtimeNanos();
+        final int pageFlips = readPageFlipCount();
+        if (pageFlips >= 0 && mLastPageFlips >= 0 && now > mLastSampleNanos) {
+            mFps = (pageFlips - mLastPageFlips) * 1e9f / (now - mLastSampleNanos);
+        } else {
+            mFps = -1;
+        }
+        mLastPageFlips = pageFlips;
+        mLastSampleNanos = now;
+    }
+
+    /**
+     * Drops the frame rate baseline, the next sample after a pause would otherwise
+     * average over the pause.
+     */
+    public void reset() {
+        mLastPageFlips = -1;
+    }
+
+    /**
+     * Appends the last sample to the given builder, without allocating on the way.
+     */
+    public void format(StringBuilder sb) {
+        sb.append(mForegroundApp).append('\n');
+
+        sb.append("thermal ").append(mProfileNames[mProfile]);
+        if (mSconfig >= 0) {
+            sb.append(" (").append(mSconfig).append(')');
+        }
+        sb.append('\n');
+
+        sb.append("refresh ").append(Math.round(mDisplay.getRefreshRate())).append(" Hz");
+        if (mFps >= 0) {
+            sb.append("  fps ").append(Math.round(mFps));
+        }
+        sb.append('\n');
+
+        sb.append("cpu");
+        for (long freq : mCpuFreqs) {
+            sb.append(' ').append(freq >= 0 ? freq / 1000 : -1);
+        }
+        sb.append(" MHz\n");
+        if (mGpuFreq >= 0) {
+            sb.append("gpu ").append(mGpuFreq / 1000000).append(" MHz\n");
+        }
+
+        for (int zone : mTopZones) {
+            if (zone < 0 || mZoneTemps[zone] < 0) {
+                break;
+            }
+            final long temp = mZoneTemps[zone];
+            sb.append(mZoneTypes[zone]).append(' ').append(temp / 1000).append('.')
+                    .append(temp % 1000 / 100).append(" C\n");
+        }
+        // No trailing line break
+        if (sb.length() > 0) {
+            sb.setLength(sb.length() - 1);
+        }
+    }
+
+    public void close() {
+        for (RandomAccessFile node : mCpuNodes) {
+            closeQuietly(node);
+        }
+        closeQuietly(mGpuNode);
+        closeQuietly(mSconfigNode);
+        for (RandomAccessFile node : mZoneNodes) {
+            closeQuietly(node);
+        }
+    }
+
+    /**
+     * @return the decimal number at the start of the node, or -1 if it can't be read or
+     *         is negative, which only idle or broken thermal zones report
+     */
+    private long readLong(RandomAccessFile node) {
+        if (node == null) {
+            return -1;
+        }
+        final int length;
+        try {
+            // sysfs regenerates the contents when read again from the start
+            node.seek(0);
+            length = node.read(mReadBuffer);
+        } catch (IOException e) {
+            return -1;
+        }
+        long value = 0;
+        boolean negative = false;
+        int i = 0;
+        if (length > 0 && mReadBuffer[0] == '-') {
+            negative = true;
+            i++;
+        }
+        final int start = i;
+        for (; i < length; i++) {
+            final byte b = mReadBuffer[i];
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+        }
+        if (i == start) {
+            return -1;
+        }
+        return negative ? -1 : value;
+    }
+
+    private static int readPageFlipCount() {
+        final IBinder surfaceFlinger = ServiceManager.checkService(SURFACE_FLINGER);
+        if (surfaceFlinger == null) {
+            return -1;
+        }
+        final Parcel data = Parcel.obtain();
+        final Parcel reply = Parcel.obtain();
+        try {
+            data.writeInterfaceToken(SURFACE_COMPOSER);
+            surfaceFlinger.transact(SURFACE_FLINGER_GET_PAGE_FLIP_COUNT, data, reply, 0);
+            return reply.readInt();
+        } catch (RemoteException | SecurityException e) {
+            return -1;
+        } finally {
+            data.recycle();
+            reply.recycle();
+        }
+    }
+
+    private static File[] listSorted(String dir, String prefix) {
+        final File[] files = new File(dir).listFiles(
+                (parent, name) -> name.startsWith(prefix));
+        if (files == null) {
+            return new File[0];
+        }
+        // Natural order, so policy6 comes before policy7 and thermal_zone9 before 10
+        Arrays.sort(files, (a, b) -> {
+            final String nameA = a.getName();
+            final String nameB = b.getName();
+            return nameA.length() != nameB.length()
+                    ? nameA.length() - nameB.length() : nameA.compareTo(nameB);
+        });
+        return files;
+    }
+
+    private static boolean matchesPrefix(String type, String[] prefixes) {
+        if (prefixes.length == 0) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (type.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String readText(File file) {
+        try (RandomAccessFile node = new RandomAccessFile(file, "r")) {
+            final String line = node.readLine();
+            return line != null ? line.trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static RandomAccessFile open(File file) {
+        try {
+            return new RandomAccessFile(file, "r");
+        } catch (IOException e) {
+            Log.w(TAG, "Can't open " + file);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile node) {
+        if (node == null) {
+            return;
+        }
+        try {
+            node.close();
+        } catch (IOException e) {
+            // Do nothing
+        }
+    }
+}
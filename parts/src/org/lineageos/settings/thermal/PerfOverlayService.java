@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.app.ActivityTaskManager;
+import android.app.ActivityTaskManager.RootTaskInfo;
+import android.app.IActivityTaskManager;
+import android.app.Service;
+import android.app.TaskStackListener;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.graphics.PixelFormat;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.os.RemoteException;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.WindowManager;
+import android.widget.TextView;
+
+import androidx.preference.PreferenceManager;
+
+import org.lineageos.settings.Constants;
+import org.lineageos.settings.R;
+
+/**
+ * Floating overlay showing the thermal profile, refresh rate, CPU and GPU frequencies,
+ * hottest thermal zones and frame rate while the app being tuned runs, so none of it
+ * has to be polled over adb. Sampling runs on a background thread and the text is
+ * redrawn once per sample, a few times per second at most. Nothing is sampled while
+ * the screen is off.
+ */
+public class PerfOverlayService extends Service {
+    private static final String TAG = "PerfOverlayService";
+    private static final boolean DEBUG = false;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private HandlerThread mHandlerThread;
+    private Handler mHandler;
+    private IActivityTaskManager mActivityTaskManager;
+    private WindowManager mWindowManager;
+    private TextView mView;
+
+    private PerfOverlaySampler mSampler;
+    private long mIntervalMs;
+
+    // Written on the sampling thread, read on the main thread
+    private final StringBuilder mText = new StringBuilder(256);
+
+    private final Runnable mSample = this::sample;
+    private final Runnable mRedraw = this::redraw;
+    private final Runnable mUpdateForegroundApp = this::updateForegroundApp;
+
+    private final BroadcastReceiver mScreenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mHandler.removeCallbacks(mSample);
+            if (Intent.ACTION_SCREEN_ON.equals(intent.getAction())) {
+                mSampler.reset();
+                mHandler.post(mSample);
+            }
+        }
+    };
+
+    private final TaskStackListener mTaskListener = new TaskStackListener() {
+        @Override
+        public void onTaskStackChanged() {
+            mHandler.removeCallbacks(mUpdateForegroundApp);
+            mHandler.post(mUpdateForegroundApp);
+        }
+    };
+
+    @Override
+    public void onCreate() {
+        if (DEBUG) Log.d(TAG, "Creating service");
+        super.onCreate();
+        mIntervalMs = getResources().getInteger(R.integer.config_perfOverlayIntervalMs);
+
+        mActivityTaskManager = ActivityTaskManager.getService();
+        mHandlerThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mHandlerThread.start();
+        mHandler = new Handler(mHandlerThread.getLooper());
+        mHandler.post(() -> {
+            mSampler = new PerfOverlaySampler(this);
+            updateForegroundApp();
+            sample();
+        });
+
+        mWindowManager = getSystemService(WindowManager.class);
+        mView = (TextView) LayoutInflater.from(this).inflate(R.layout.perf_overlay, null);
+        final WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                        | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN,
+                PixelFormat.TRANSLUCENT);
+        params.gravity = Gravity.TOP | Gravity.START;
+        params.setTitle(TAG);
+        mWindowManager.addView(mView, params);
+
+        final IntentFilter screenFilter = new IntentFilter();
+        screenFilter.addAction(Intent.ACTION_SCREEN_OFF);
+        screenFilter.addAction(Intent.ACTION_SCREEN_ON);
+        registerReceiver(mScreenReceiver, screenFilter, null, mHandler);
+
+        try {
+            mActivityTaskManager.registerTaskStackListener(mTaskListener);
+        } catch (RemoteException e) {
+            Log.e(TAG, "Failed to register task stack listener", e);
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (DEBUG) Log.d(TAG, "Destroying service");
+        try {
+            mActivityTaskManager.unregisterTaskStackListener(mTaskListener);
+        } catch (RemoteException e) {
+            // Do nothing
+        }
+        unregisterReceiver(mScreenReceiver);
+        mHandler.removeCallbacksAndMessages(null);
+        mHandler.post(() -> {
+            if (mSampler != null) {
+                mSampler.close();
+            }
+        });
+        mHandlerThread.quitSafely();
+        mMainHandler.removeCallbacks(mRedraw);
+        mWindowManager.removeView(mView);
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /**
+     * @return whether the overlay was last asked to be shown, the service itself only
+     *         comes and goes some time after that
+     */
+    public static boolean isEnabled(Context context) {
+        return getPrefs(context).getBoolean(Constants.KEY_PERF_OVERLAY, false);
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        // Device protected, so the overlay can come back before the first unlock
+        getPrefs(context).edit().putBoolean(Constants.KEY_PERF_OVERLAY, enabled).apply();
+        final Intent intent = new Intent(context, PerfOverlayService.class);
+        if (enabled) {
+            context.startService(intent);
+        } else {
+            context.stopService(intent);
+        }
+    }
+
+    /**
+     * Shows the overlay again if it was enabled when the process last went away.
+     */
+    public static void restore(Context context) {
+        if (isEnabled(context)) {
+            if (DEBUG) Log.d(TAG, "Restoring overlay");
+            context.startService(new Intent(context, PerfOverlayService.class));
+        }
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(
+                context.createDeviceProtectedStorageContext());
+    }
+
+    private void sample() {
+        mSampler.sample();
+        synchronized (mText) {
+            mText.setLength(0);
+            mSampler.format(mText);
+        }
+        mMainHandler.removeCallbacks(mRedraw);
+        mMainHandler.post(mRedraw);
+        mHandler.postDelayed(mSample, mIntervalMs);
+    }
+
+    private void redraw() {
+        synchronized (mText) {
+            mView.setText(mText);
+        }
+    }
+
+    private void updateForegroundApp() {
+        if (mSampler == null) {
+            return;
+        }
+        try {
+            final RootTaskInfo info = mActivityTaskManager.getFocusedRootTaskInfo();
+            if (info != null && info.topActivity != null) {
+                mSampler.setForegroundApp(info.topActivity.getPackageName());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to resolve foreground app", e);
+        }
+    }
+}
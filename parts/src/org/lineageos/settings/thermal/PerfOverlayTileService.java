@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+
+public class PerfOverlayTileService extends TileService {
+
+    @Override
+    public void onStartListening() {
+        super.onStartListening();
+        updateTile(PerfOverlayService.isEnabled(this));
+    }
+
+    @Override
+    public void onClick() {
+        super.onClick();
+        final boolean enabled = !PerfOverlayService.isEnabled(this);
+        PerfOverlayService.setEnabled(this, enabled);
+        updateTile(enabled);
+    }
+
+    private void updateTile(boolean enabled) {
+        final Tile tile = getQsTile();
+        if (tile != null) {
+            tile.setState(enabled ? Tile.STATE_ACTIVE : Tile.STATE_INACTIVE);
+            tile.updateTile();
+        }
+    }
+}
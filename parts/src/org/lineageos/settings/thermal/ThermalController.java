@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.content.Context;
+import android.os.Handler;
+
+import org.lineageos.settings.policy.PolicyController;
+
+import java.io.PrintWriter;
+
+public class ThermalController implements PolicyController {
+
+    private boolean mScreenOn = true;
+    private String mCurrentApp = "";
+    private ThermalUtils mThermalUtils;
+
+    @Override
+    public String getName() {
+        return "thermal";
+    }
+
+    @Override
+    public boolean isEnabled(Context context) {
+        return new ThermalUtils(context).hasProfiles();
+    }
+
+    @Override
+    public void onStart(Context context, Handler handler) {
+        mThermalUtils = new ThermalUtils(context);
+    }
+
+    @Override
+    public void onStop() {
+        mThermalUtils = null;
+        mCurrentApp = "";
+    }
+
+    @Override
+    public void onForegroundAppChanged(String packageName) {
+        mCurrentApp = packageName;
+        setThermalProfile();
+    }
+
+    @Override
+    public void onScreenStateChanged(boolean screenOn) {
+        mScreenOn = screenOn;
+        setThermalProfile();
+    }
+
+    @Override
+    public void dump(PrintWriter pw) {
+        pw.println("  screenOn=" + mScreenOn + " currentApp=" + mCurrentApp);
+        if (mThermalUtils != null) {
+            pw.println("  profile=" + mThermalUtils.getStateForPackage(mCurrentApp));
+        }
+        ThermalUtils.dump(pw, "  ");
+    }
+
+    private void setThermalProfile() {
+        mThermalUtils.setThermalProfile(mCurrentApp, mScreenOn);
+    }
+}
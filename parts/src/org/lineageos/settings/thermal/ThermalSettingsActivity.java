@@ -17,14 +17,16 @@
 package org.lineageos.settings.thermal;
 
 import android.os.Bundle;
+import android.view.Menu;
 import android.view.MenuItem;
 
 import com.android.settingslib.collapsingtoolbar.CollapsingToolbarBaseActivity;
 
+import org.lineageos.settings.R;
+
 public class ThermalSettingsActivity extends CollapsingToolbarBaseActivity {
 
     private static final String TAG_THERMAL = "thermal";
-    private static final String THERMAL_SCONFIG = "/sys/class/thermal/thermal_message/sconfig";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,12 +36,30 @@ public class ThermalSettingsActivity extends CollapsingToolbarBaseActivity {
                 new ThermalSettingsFragment(), TAG_THERMAL).commit();
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.thermal_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.perf_overlay).setChecked(PerfOverlayService.isEnabled(this));
+        return true;
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
             onBackPressed();
             return true;
         }
+        if (item.getItemId() == R.id.perf_overlay) {
+            final boolean enabled = !item.isChecked();
+            PerfOverlayService.setEnabled(this, enabled);
+            item.setChecked(enabled);
+            return true;
+        }
         return false;
     }
 }
@@ -43,6 +43,8 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import com.android.settingslib.applications.ApplicationsState;
 
 import org.lineageos.settings.R;
+import org.lineageos.settings.perf.PowerModeAdapter;
+import org.lineageos.settings.utils.UiHiddenCallbacks;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,6 +58,8 @@ public class ThermalSettingsFragment extends PreferenceFragment
     private AllPackagesAdapter mAllPackagesAdapter;
     private ApplicationsState mApplicationsState;
     private ApplicationsState.Session mSession;
+    private final UiHiddenCallbacks mUiHiddenCallbacks =
+            new UiHiddenCallbacks(this::releaseSession);
     private ActivityFilter mActivityFilter;
     private Map<String, ApplicationsState.AppEntry> mEntryMap =
             new HashMap<String, ApplicationsState.AppEntry>();
@@ -73,7 +77,7 @@ public class ThermalSettingsFragment extends PreferenceFragment
 
         mApplicationsState = ApplicationsState.getInstance(getActivity().getApplication());
         mSession = mApplicationsState.newSession(this);
-        mSession.onResume();
+        getActivity().getApplication().registerComponentCallbacks(mUiHiddenCallbacks);
         mActivityFilter = new ActivityFilter(getActivity().getPackageManager());
 
         mAllPackagesAdapter = new AllPackagesAdapter(getActivity());
@@ -100,16 +104,46 @@ public class ThermalSettingsFragment extends PreferenceFragment
     @Override
     public void onResume() {
         super.onResume();
+        if (mSession == null) {
+            mSession = mApplicationsState.newSession(this);
+        }
+        mSession.onResume();
         getActivity().setTitle(getResources().getString(R.string.thermal_title));
         rebuild();
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        // Let ApplicationsState stop its background work while the list is hidden
+        if (mSession != null) {
+            mSession.onPause();
+        }
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
 
-        mSession.onPause();
+        getActivity().getApplication().unregisterComponentCallbacks(mUiHiddenCallbacks);
+        releaseSession();
+    }
+
+    /**
+     * Drops the session and the entries it loaded, the list is rebuilt on the next
+     * resume. Icons are loaded again by ensureIcon() as rows are bound.
+     */
+    private void releaseSession() {
+        if (mSession == null) {
+            return;
+        }
         mSession.onDestroy();
+        mSession = null;
+        for (ApplicationsState.AppEntry entry : mEntryMap.values()) {
+            entry.icon = null;
+        }
+        mEntryMap.clear();
+        mAllPackagesAdapter.setEntries(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
     }
 
     @Override
@@ -219,6 +253,7 @@ public class ThermalSettingsFragment extends PreferenceFragment
     private class ViewHolder extends RecyclerView.ViewHolder {
         private TextView title;
         private Spinner mode;
+        private Spinner powerMode;
         private ImageView icon;
         private View rootView;
         private ImageView stateIcon;
@@ -227,6 +262,7 @@ public class ThermalSettingsFragment extends PreferenceFragment
             super(view);
             this.title = view.findViewById(R.id.app_name);
             this.mode = view.findViewById(R.id.app_mode);
+            this.powerMode = view.findViewById(R.id.app_power_mode);
             this.icon = view.findViewById(R.id.app_icon);
             this.stateIcon = view.findViewById(R.id.state);
             this.rootView = view;
@@ -315,6 +351,7 @@ public class ThermalSettingsFragment extends PreferenceFragment
             Context context = holder.itemView.getContext();
             holder.mode.setAdapter(new ModeAdapter(context));
             holder.mode.setOnItemSelectedListener(this);
+            holder.powerMode.setAdapter(new PowerModeAdapter(context));
             return holder;
         }
 
@@ -333,6 +370,8 @@ public class ThermalSettingsFragment extends PreferenceFragment
             int packageState = mThermalUtils.getStateForPackage(entry.info.packageName);
             holder.mode.setSelection(packageState, false);
             holder.mode.setTag(entry);
+            ((PowerModeAdapter) holder.powerMode.getAdapter())
+                    .bind(holder.powerMode, entry.info.packageName);
             holder.stateIcon.setImageResource(getStateDrawable(packageState));
         }
 
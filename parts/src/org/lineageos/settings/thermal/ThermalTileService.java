@@ -27,7 +27,6 @@ import org.lineageos.settings.R;
 public class ThermalTileService extends TileService {
 
     private static final String TAG = "ThermalTileService";
-    private static final String THERMAL_SCONFIG = "/sys/class/thermal/thermal_message/sconfig";
 
     private String[] modes;
     private int currentMode = 0; // Default to the first mode
@@ -64,7 +63,7 @@ public class ThermalTileService extends TileService {
     }
 
     private int getCurrentThermalMode() {
-        String line = FileUtils.readOneLine(THERMAL_SCONFIG);
+        String line = FileUtils.readOneLine(ThermalUtils.THERMAL_SCONFIG);
         if (line != null) {
             try {
                 int value = Integer.parseInt(line.trim());
@@ -93,8 +92,9 @@ public class ThermalTileService extends TileService {
         }
 
         // Write the new thermal value to the sconfig file
-        boolean success = FileUtils.writeLine(THERMAL_SCONFIG, String.valueOf(thermalValue));
-        Log.d(TAG, "Thermal mode changed to " + modes[mode] + ": " + success);
+        final String modeName = modes[mode];
+        ThermalUtils.writeSconfig(TAG, String.valueOf(thermalValue)).thenAccept(success ->
+                Log.d(TAG, "Thermal mode changed to " + modeName + ": " + success));
     }
 
     private void updateTile() {
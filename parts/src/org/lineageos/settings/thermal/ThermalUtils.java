@@ -17,37 +17,35 @@
 package org.lineageos.settings.thermal;
 
 import android.content.Context;
-import android.content.Intent;
 import android.content.SharedPreferences;
-import android.os.UserHandle;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.preference.PreferenceManager;
 
-import org.lineageos.settings.utils.FileUtils;
+import org.lineageos.settings.policy.PolicyUtils;
+import org.lineageos.settings.policy.core.ProfileTable;
+import org.lineageos.settings.policy.core.ThermalPolicy;
+import org.lineageos.settings.utils.SysfsWriter;
+import org.lineageos.settings.utils.TraceUtils;
+import org.lineageos.settings.utils.TransitionLog;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public final class ThermalUtils {
 
     private static final String THERMAL_CONTROL = "thermal_control";
 
-    protected static final int STATE_DEFAULT = 0;
-    protected static final int STATE_BENCHMARK = 1;
-    protected static final int STATE_BROWSER = 2;
-    protected static final int STATE_CAMERA = 3;
-    protected static final int STATE_DIALER = 4;
-    protected static final int STATE_GAMING = 5;
-    protected static final int STATE_NAVIGATION = 6;
-    protected static final int STATE_STREAMING = 7;
-    protected static final int STATE_VIDEO = 8;
-
-    private static final String THERMAL_STATE_DEFAULT = "0";
-    private static final String THERMAL_STATE_BENCHMARK = "10";
-    private static final String THERMAL_STATE_BROWSER = "11";
-    private static final String THERMAL_STATE_CAMERA = "12";
-    private static final String THERMAL_STATE_DIALER = "8";
-    private static final String THERMAL_STATE_GAMING = "9";
-    private static final String THERMAL_STATE_NAVIGATION = "19";
-    private static final String THERMAL_STATE_STREAMING = "14";
-    private static final String THERMAL_STATE_VIDEO = "21";
+    protected static final int STATE_DEFAULT = ThermalPolicy.STATE_DEFAULT;
+    protected static final int STATE_BENCHMARK = ThermalPolicy.STATE_BENCHMARK;
+    protected static final int STATE_BROWSER = ThermalPolicy.STATE_BROWSER;
+    protected static final int STATE_CAMERA = ThermalPolicy.STATE_CAMERA;
+    protected static final int STATE_DIALER = ThermalPolicy.STATE_DIALER;
+    protected static final int STATE_GAMING = ThermalPolicy.STATE_GAMING;
+    protected static final int STATE_NAVIGATION = ThermalPolicy.STATE_NAVIGATION;
+    protected static final int STATE_STREAMING = ThermalPolicy.STATE_STREAMING;
+    protected static final int STATE_VIDEO = ThermalPolicy.STATE_VIDEO;
 
     private static final String THERMAL_BENCHMARK = "thermal.benchmark=";
     private static final String THERMAL_BROWSER = "thermal.browser=";
@@ -58,34 +56,67 @@ public final class ThermalUtils {
     private static final String THERMAL_STREAMING = "thermal.streaming=";
     private static final String THERMAL_VIDEO = "thermal.video=";
 
-    private static final String THERMAL_SCONFIG = "/sys/class/thermal/thermal_message/sconfig";
+    protected static final String THERMAL_SCONFIG = "/sys/class/thermal/thermal_message/sconfig";
+
+    // Parsed thermal_control table, shared by every instance in the process
+    private static Map<String, Integer> sStates;
 
+    // Last sconfig value written from this process, guarded by the class lock
+    private static String sAppliedState;
+    private static final TransitionLog sLog = new TransitionLog(32);
+
+    private Context mContext;
     private SharedPreferences mSharedPrefs;
 
     protected ThermalUtils(Context context) {
+        mContext = context;
         mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
     }
 
-    public static void startService(Context context) {
-        context.startServiceAsUser(new Intent(context, ThermalService.class),
-                UserHandle.CURRENT);
+    /**
+     * Loads the table from device protected storage into memory and commits the
+     * default profile, so the first foreground app after unlock needs no parsing.
+     */
+    public static void preload(Context context) {
+        final ThermalUtils utils = new ThermalUtils(context.createDeviceProtectedStorageContext());
+        if (utils.mSharedPrefs.getString(THERMAL_CONTROL, null) == null) {
+            utils.mSharedPrefs.edit().putString(THERMAL_CONTROL, getDefaultValue()).commit();
+        }
+        utils.getStates();
+        utils.setDefaultThermalProfile();
+    }
+
+    private static String getDefaultValue() {
+        return THERMAL_BENCHMARK + ":" + THERMAL_BROWSER + ":" + THERMAL_CAMERA + ":" + THERMAL_DIALER + ":" +
+                THERMAL_GAMING + ":" + THERMAL_NAVIGATION + ":" + THERMAL_STREAMING + ":" + THERMAL_VIDEO;
     }
 
     private void writeValue(String profiles) {
         mSharedPrefs.edit().putString(THERMAL_CONTROL, profiles).apply();
+        synchronized (ThermalUtils.class) {
+            sStates = ProfileTable.parse(profiles);
+        }
     }
 
     private String getValue() {
         String value = mSharedPrefs.getString(THERMAL_CONTROL, null);
 
         if (value == null || value.isEmpty()) {
-            value = THERMAL_BENCHMARK + ":" + THERMAL_BROWSER + ":" + THERMAL_CAMERA + ":" + THERMAL_DIALER + ":" +
-                    THERMAL_GAMING + ":" + THERMAL_NAVIGATION + ":" + THERMAL_STREAMING + ":" + THERMAL_VIDEO;
+            value = getDefaultValue();
             writeValue(value);
         }
         return value;
     }
 
+    private Map<String, Integer> getStates() {
+        synchronized (ThermalUtils.class) {
+            if (sStates == null) {
+                sStates = ProfileTable.parse(getValue());
+            }
+            return sStates;
+        }
+    }
+
     protected void writePackage(String packageName, int mode) {
         String value = getValue();
         value = value.replace(packageName + ",", "");
@@ -123,63 +154,75 @@ public final class ThermalUtils {
                 modes[4] + ":" + modes[5] + ":" + modes[6] + ":" + modes[7];
 
         writeValue(finalString);
+        PolicyUtils.checkService(mContext);
     }
 
-    protected int getStateForPackage(String packageName) {
-        String value = getValue();
-        String[] modes = value.split(":");
-        int state = STATE_DEFAULT;
-        if (modes[0].contains(packageName + ",")) {
-            state = STATE_BENCHMARK;
-        } else if (modes[1].contains(packageName + ",")) {
-            state = STATE_BROWSER;
-        } else if (modes[2].contains(packageName + ",")) {
-            state = STATE_CAMERA;
-        } else if (modes[3].contains(packageName + ",")) {
-            state = STATE_DIALER;
-        } else if (modes[4].contains(packageName + ",")) {
-            state = STATE_GAMING;
-        } else if (modes[5].contains(packageName + ",")) {
-            state = STATE_NAVIGATION;
-        } else if (modes[6].contains(packageName + ",")) {
-            state = STATE_STREAMING;
-        } else if (modes[7].contains(packageName + ",")) {
-            state = STATE_VIDEO;
-        }
+    protected boolean hasProfiles() {
+        return !getStates().isEmpty();
+    }
 
-        return state;
+    protected int getStateForPackage(String packageName) {
+        return ThermalPolicy.getState(getStates(), packageName);
     }
 
-    protected void setDefaultThermalProfile() {
-        FileUtils.writeLine(THERMAL_SCONFIG, THERMAL_STATE_DEFAULT);
+    private void setDefaultThermalProfile() {
+        writeSconfig(null, ThermalPolicy.getSconfig(STATE_DEFAULT, false /* screenOn */));
     }
 
-    protected void setThermalProfile(String packageName) {
-        String value = getValue();
-        String modes[];
-        String state = THERMAL_STATE_DEFAULT;
-
-        if (value != null) {
-            modes = value.split(":");
-
-            if (modes[0].contains(packageName + ",")) {
-                state = THERMAL_STATE_BENCHMARK;
-            } else if (modes[1].contains(packageName + ",")) {
-                state = THERMAL_STATE_BROWSER;
-            } else if (modes[2].contains(packageName + ",")) {
-                state = THERMAL_STATE_CAMERA;
-            } else if (modes[3].contains(packageName + ",")) {
-                state = THERMAL_STATE_DIALER;
-            } else if (modes[4].contains(packageName + ",")) {
-                state = THERMAL_STATE_GAMING;
-            } else if (modes[5].contains(packageName + ",")) {
-                state = THERMAL_STATE_NAVIGATION;
-            } else if (modes[6].contains(packageName + ",")) {
-                state = THERMAL_STATE_STREAMING;
-            } else if (modes[7].contains(packageName + ",")) {
-                state = THERMAL_STATE_VIDEO;
+    /**
+     * Queues a thermal config unless it is the one last written from this process.
+     * thermal-engine may keep the node busy, so the write happens asynchronously.
+     *
+     * @param subject what the config is applied for, used in dumps, may be null
+     * @return a future completed with whether the write succeeded
+     */
+    protected static CompletableFuture<Boolean> writeSconfig(String subject, String state) {
+        synchronized (ThermalUtils.class) {
+            if (state.equals(sAppliedState)) {
+                sLog.recordSkip();
+                return CompletableFuture.completedFuture(true);
             }
+            sAppliedState = state;
         }
-        FileUtils.writeLine(THERMAL_SCONFIG, state);
+        return SysfsWriter.writeLineResult(THERMAL_SCONFIG, state).thenApply(result -> {
+            // A newer config may have replaced this one while it was queued, it is logged
+            // by the caller that queued it
+            if (result.value.equals(state)) {
+                synchronized (ThermalUtils.class) {
+                    if (!result.success && state.equals(sAppliedState)) {
+                        sAppliedState = null;
+                    }
+                }
+                sLog.recordWrite(subject, state, result.success);
+                if (result.success) {
+                    TraceUtils.setCounter(TraceUtils.COUNTER_SCONFIG, state);
+                }
+            }
+            return result.success;
+        });
+    }
+
+    /**
+     * Forgets the parsed table and the last written config, so every test starts afresh.
+     */
+    @VisibleForTesting
+    static void reset() {
+        synchronized (ThermalUtils.class) {
+            sStates = null;
+            sAppliedState = null;
+        }
+    }
+
+    protected static void dump(PrintWriter pw, String prefix) {
+        synchronized (ThermalUtils.class) {
+            pw.println(prefix + "sconfig=" + sAppliedState
+                    + " profiles=" + (sStates != null ? sStates.size() : "not loaded"));
+        }
+        sLog.dump(pw, prefix);
+    }
+
+    protected void setThermalProfile(String packageName, boolean screenOn) {
+        writeSconfig(screenOn ? packageName : null,
+                ThermalPolicy.getSconfig(getStateForPackage(packageName), screenOn));
     }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.utils;
+
+import android.content.BroadcastReceiver;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent boot tasks concurrently on a small executor, starting each task
+ * only once the tasks it depends on have finished. The pending broadcast is finished
+ * and a timing report is logged when the last task completes.
+ */
+public final class BootTaskScheduler {
+    private static final String TAG = "BootTaskScheduler";
+
+    private static final int THREAD_COUNT = 3;
+
+    private final String mName;
+    private final List<Task> mTasks = new ArrayList<>();
+    private final Map<String, Task> mTasksByName = new HashMap<>();
+
+    private ExecutorService mExecutor;
+    private BroadcastReceiver.PendingResult mPendingResult;
+    private AtomicInteger mRemaining;
+    private long mStartTime;
+
+    private static final class Task {
+        final String name;
+        final Runnable runnable;
+        final String[] dependencies;
+        final List<Task> dependents = new ArrayList<>();
+        final AtomicInteger pendingDependencies = new AtomicInteger();
+        long startOffset;
+        long duration;
+        boolean failed;
+
+        Task(String name, Runnable runnable, String[] dependencies) {
+            this.name = name;
+            this.runnable = runnable;
+            this.dependencies = dependencies;
+        }
+    }
+
+    public BootTaskScheduler(String name) {
+        mName = name;
+    }
+
+    /**
+     * Declares a task. Dependencies must name tasks that were added before this one.
+     */
+    public BootTaskScheduler addTask(String name, Runnable runnable, String... dependencies) {
+        if (mTasksByName.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate boot task " + name);
+        }
+        final Task task = new Task(name, runnable, dependencies);
+        for (String dependency : dependencies) {
+            final Task parent = mTasksByName.get(dependency);
+            if (parent == null) {
+                throw new IllegalArgumentException("Boot task " + name
+                        + " depends on unknown task " + dependency);
+            }
+            parent.dependents.add(task);
+        }
+        task.pendingDependencies.set(dependencies.length);
+        mTasks.add(task);
+        mTasksByName.put(name, task);
+        return this;
+    }
+
+    /**
+     * Starts all tasks and returns immediately. The given result, obtained through
+     * {@link BroadcastReceiver#goAsync()}, is finished once every task has run.
+     */
+    public void start(BroadcastReceiver.PendingResult pendingResult) {
+        mPendingResult = pendingResult;
+        mRemaining = new AtomicInteger(mTasks.size());
+        mStartTime = SystemClock.elapsedRealtime();
+
+        if (mTasks.isEmpty()) {
+            finish();
+            return;
+        }
+
+        mExecutor = Executors.newFixedThreadPool(Math.min(THREAD_COUNT, mTasks.size()));
+        for (Task task : mTasks) {
+            if (task.dependencies.length == 0) {
+                submit(task);
+            }
+        }
+    }
+
+    private void submit(Task task) {
+        mExecutor.execute(() -> run(task));
+    }
+
+    private void run(Task task) {
+        final long start = SystemClock.elapsedRealtime();
+        task.startOffset = start - mStartTime;
+        try {
+            task.runnable.run();
+        } catch (Throwable t) {
+            // Errors included, the pending broadcast must be finished whatever happens
+            task.failed = true;
+            Log.e(TAG, mName + ": boot task " + task.name + " failed", t);
+        }
+        task.duration = SystemClock.elapsedRealtime() - start;
+
+        for (Task dependent : task.dependents) {
+            if (dependent.pendingDependencies.decrementAndGet() == 0) {
+                submit(dependent);
+            }
+        }
+
+        if (mRemaining.decrementAndGet() == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+        logReport();
+        if (mPendingResult != null) {
+            mPendingResult.finish();
+        }
+    }
+
+    private void logReport() {
+        final StringBuilder report = new StringBuilder();
+        report.append(mName).append(" boot tasks finished in ")
+                .append(SystemClock.elapsedRealtime() - mStartTime).append(" ms:");
+        for (Task task : mTasks) {
+            report.append("\n  ").append(task.name)
+                    .append(" +").append(task.startOffset).append(" ms, took ")
+                    .append(task.duration).append(" ms");
+            if (task.failed) {
+                report.append(" (failed)");
+            }
+        }
+        Log.i(TAG, report.toString());
+    }
+}
@@ -18,6 +18,8 @@ package org.lineageos.settings.utils;
 
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -29,10 +31,31 @@ import java.io.IOException;
 public final class FileUtils {
     private static final String TAG = "FileUtils";
 
+    // Prefix for absolute paths, empty on device
+    private static volatile String sRoot = "";
+
     private FileUtils() {
         // This class is not supposed to be instantiated
     }
 
+    /**
+     * Redirects every absolute path handled by this class below the given directory,
+     * so that a fake sysfs tree can stand in for the kernel. Pass null or an empty
+     * string to go back to the real paths.
+     */
+    @VisibleForTesting
+    public static void setRoot(String root) {
+        sRoot = root != null ? root : "";
+    }
+
+    static String resolve(String fileName) {
+        final String root = sRoot;
+        if (root.isEmpty() || !fileName.startsWith("/")) {
+            return fileName;
+        }
+        return root + fileName;
+    }
+
     /**
      * Reads the first line of text from the given file.
      * Reference {@link BufferedReader#readLine()} for clarification on what a line is
@@ -43,8 +66,9 @@ public final class FileUtils {
         String line = null;
         BufferedReader reader = null;
 
+        TraceUtils.beginSection("FileUtils#readOneLine", fileName);
         try {
-            reader = new BufferedReader(new FileReader(fileName), 512);
+            reader = new BufferedReader(new FileReader(resolve(fileName)), 512);
             line = reader.readLine();
         } catch (FileNotFoundException e) {
             Log.w(TAG, "No such file " + fileName + " for reading", e);
@@ -58,6 +82,7 @@ public final class FileUtils {
             } catch (IOException e) {
                 // Ignored, not much we can do anyway
             }
+            TraceUtils.endSection();
         }
 
         return line;
@@ -71,8 +96,9 @@ public final class FileUtils {
     public static boolean writeLine(String fileName, String value) {
         BufferedWriter writer = null;
 
+        TraceUtils.beginSection("FileUtils#writeLine", fileName);
         try {
-            writer = new BufferedWriter(new FileWriter(fileName));
+            writer = new BufferedWriter(new FileWriter(resolve(fileName)));
             writer.write(value);
         } catch (FileNotFoundException e) {
             Log.w(TAG, "No such file " + fileName + " for writing", e);
@@ -88,6 +114,7 @@ public final class FileUtils {
             } catch (IOException e) {
                 // Ignored, not much we can do anyway
             }
+            TraceUtils.endSection();
         }
 
         return true;
@@ -99,7 +126,7 @@ public final class FileUtils {
      * @return true if exists, false if not
      */
     public static boolean fileExists(String fileName) {
-        final File file = new File(fileName);
+        final File file = new File(resolve(fileName));
         return file.exists();
     }
 
@@ -109,7 +136,7 @@ public final class FileUtils {
      * @return true if readable, false if not
      */
     public static boolean isFileReadable(String fileName) {
-        final File file = new File(fileName);
+        final File file = new File(resolve(fileName));
         return file.exists() && file.canRead();
     }
 
@@ -119,7 +146,7 @@ public final class FileUtils {
      * @return true if writable, false if not
      */
     public static boolean isFileWritable(String fileName) {
-        final File file = new File(fileName);
+        final File file = new File(resolve(fileName));
         return file.exists() && file.canWrite();
     }
 
@@ -129,7 +156,7 @@ public final class FileUtils {
      * @return true if the delete was successful, false if not
      */
     public static boolean delete(String fileName) {
-        final File file = new File(fileName);
+        final File file = new File(resolve(fileName));
         boolean ok = false;
         try {
             ok = file.delete();
@@ -145,8 +172,8 @@ public final class FileUtils {
      * @return true if the rename was successful, false if not
      */
     public static boolean rename(String srcPath, String dstPath) {
-        final File srcFile = new File(srcPath);
-        final File dstFile = new File(dstPath);
+        final File srcFile = new File(resolve(srcPath));
+        final File dstFile = new File(resolve(dstPath));
         boolean ok = false;
         try {
             ok = srcFile.renameTo(dstFile);
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.utils;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.FileDescriptor;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes sysfs nodes off the calling thread. Every node has a single pending slot, so
+ * when several values are queued for a node before the writer gets to it only the
+ * newest one is written, and every caller waiting on that node is completed with its
+ * result. Writes failing with EBUSY or EAGAIN are retried a few times with backoff.
+ */
+public final class SysfsWriter {
+    private static final String TAG = "SysfsWriter";
+    private static final boolean DEBUG = false;
+
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_INITIAL_DELAY_MS = 10;
+
+    /**
+     * Takes the place of the kernel for every write, see {@link #setBackend}.
+     */
+    @VisibleForTesting
+    public interface Backend {
+        /**
+         * Called on the writer thread with the path as passed to {@link #writeLine}.
+         *
+         * @return 0 on success, otherwise the errno the write failed with
+         */
+        int write(String fileName, String value);
+    }
+
+    /**
+     * Outcome of a write, see {@link #writeLineResult}.
+     */
+    public static final class Result {
+        /** The value that reached the node, newer than the queued one if it was replaced. */
+        public final String value;
+        public final boolean success;
+
+        private Result(String value, boolean success) {
+            this.value = value;
+            this.success = success;
+        }
+    }
+
+    private static volatile Backend sBackend;
+
+    private static final Object sLock = new Object();
+    private static final Map<String, Node> sNodes = new HashMap<>();
+    private static Handler sHandler;
+
+    private static final class Node {
+        final String path;
+        final Runnable writeRunnable = this::write;
+
+        // Guarded by sLock
+        String pendingValue;
+        CompletableFuture<Result> pendingFuture;
+        boolean scheduled;
+        boolean writing;
+        int attempts;
+
+        Node(String path) {
+            this.path = path;
+        }
+
+        void schedule(long delayMs) {
+            scheduled = true;
+            sHandler.postDelayed(writeRunnable, delayMs);
+        }
+
+        private void write() {
+            final String value;
+            final CompletableFuture<Result> future;
+            synchronized (sLock) {
+                scheduled = false;
+                if (pendingValue == null) {
+                    return;
+                }
+                value = pendingValue;
+                future = pendingFuture;
+                pendingValue = null;
+                pendingFuture = null;
+                writing = true;
+                attempts++;
+            }
+
+            final int errno = writeValue(path, value);
+
+            synchronized (sLock) {
+                writing = false;
+                if ((errno == OsConstants.EBUSY || errno == OsConstants.EAGAIN)
+                        && attempts <= MAX_RETRIES) {
+                    if (pendingValue == null) {
+                        pendingValue = value;
+                        pendingFuture = future;
+                    } else {
+                        // A newer value was queued meanwhile, it is tried instead with
+                        // retries of its own
+                        pendingFuture.thenAccept(future::complete);
+                        attempts = 0;
+                    }
+                    final long delayMs = RETRY_INITIAL_DELAY_MS << Math.max(attempts - 1, 0);
+                    if (DEBUG) Log.d(TAG, path + " busy, retrying in " + delayMs + "ms");
+                    schedule(delayMs);
+                    return;
+                }
+                attempts = 0;
+                if (pendingValue != null) {
+                    schedule(0);
+                }
+            }
+            future.complete(new Result(value, errno == 0));
+        }
+    }
+
+    private SysfsWriter() {
+        // This class is not supposed to be instantiated
+    }
+
+    /**
+     * Routes every write through the given backend instead of the file system, so that
+     * a fake kernel can record write sequences and inject errors or latency. Pass null
+     * to go back to real writes.
+     */
+    @VisibleForTesting
+    public static void setBackend(Backend backend) {
+        sBackend = backend;
+    }
+
+    /**
+     * Queues the given value for the given node, replacing any value still waiting for
+     * it.
+     *
+     * @return a future completed with true once the value, or a newer one queued for
+     *         the same node, was written and false if that write failed
+     */
+    public static CompletableFuture<Boolean> writeLine(String fileName, String value) {
+        return writeLineResult(fileName, value).thenApply(result -> result.success);
+    }
+
+    /**
+     * Like {@link #writeLine}, but tells which value was written, so that callers whose
+     * value was replaced while queued can tell their own write from the newer one.
+     */
+    public static CompletableFuture<Result> writeLineResult(String fileName, String value) {
+        synchronized (sLock) {
+            if (sHandler == null) {
+                final HandlerThread thread =
+                        new HandlerThread(TAG, Process.THREAD_PRIORITY_FOREGROUND);
+                thread.start();
+                sHandler = new Handler(thread.getLooper());
+            }
+            Node node = sNodes.get(fileName);
+            if (node == null) {
+                node = new Node(fileName);
+                sNodes.put(fileName, node);
+            }
+            if (node.pendingValue != null && !node.pendingValue.equals(value)) {
+                // The value waiting for a retry is replaced, the new one starts afresh
+                node.attempts = 0;
+            }
+            node.pendingValue = value;
+            if (node.pendingFuture == null) {
+                node.pendingFuture = new CompletableFuture<>();
+            }
+            if (!node.scheduled && !node.writing) {
+                node.schedule(0);
+            }
+            return node.pendingFuture;
+        }
+    }
+
+    /**
+     * @return 0 on success, otherwise the errno of the failed call
+     */
+    private static int writeValue(String fileName, String value) {
+        final Backend backend = sBackend;
+        if (backend != null) {
+            return backend.write(fileName, value);
+        }
+        final String path = FileUtils.resolve(fileName);
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        TraceUtils.beginSection("SysfsWriter#write", fileName);
+        FileDescriptor fd = null;
+        try {
+            // O_TRUNC is a no-op on sysfs but keeps regular files, e.g. a fake tree, from
+            // ending up with the tail of a longer previous value
+            fd = Os.open(path, OsConstants.O_WRONLY | OsConstants.O_TRUNC, 0);
+            Os.write(fd, bytes, 0, bytes.length);
+            return 0;
+        } catch (ErrnoException e) {
+            if (e.errno != OsConstants.EBUSY && e.errno != OsConstants.EAGAIN) {
+                Log.e(TAG, "Could not write to file " + fileName, e);
+            }
+            return e.errno;
+        } catch (InterruptedIOException e) {
+            Log.e(TAG, "Interrupted writing to file " + fileName, e);
+            return OsConstants.EINTR;
+        } finally {
+            if (fd != null) {
+                try {
+                    Os.close(fd);
+                } catch (ErrnoException e) {
+                    // Ignored, not much we can do anyway
+                }
+            }
+            TraceUtils.endSection();
+        }
+    }
+}
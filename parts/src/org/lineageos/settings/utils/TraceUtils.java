@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.utils;
+
+import android.os.Trace;
+
+/**
+ * Thin wrappers around {@link Trace} that check {@link Trace#isEnabled()} before
+ * building section names or counter values, so they cost nothing when no trace is
+ * being recorded.
+ */
+public final class TraceUtils {
+
+    public static final String COUNTER_SCONFIG = "XiaomiParts:sconfig";
+    public static final String COUNTER_PEAK_REFRESH_RATE = "XiaomiParts:peak_refresh_rate";
+    public static final String COUNTER_MIN_REFRESH_RATE = "XiaomiParts:min_refresh_rate";
+    public static final String COUNTER_DOZE_MODE = "XiaomiParts:doze_mode";
+    public static final String COUNTER_SATURATION = "XiaomiParts:saturation";
+
+    private TraceUtils() {
+        // This class is not supposed to be instantiated
+    }
+
+    public static void beginSection(String name) {
+        if (Trace.isEnabled()) {
+            Trace.beginSection(name);
+        }
+    }
+
+    /**
+     * Begins a section named "name arg", the two are only concatenated while tracing.
+     */
+    public static void beginSection(String name, String arg) {
+        if (Trace.isEnabled()) {
+            // Section names longer than 127 characters are rejected
+            final String section = name + " " + arg;
+            Trace.beginSection(section.length() > 127 ? section.substring(0, 127) : section);
+        }
+    }
+
+    public static void endSection() {
+        if (Trace.isEnabled()) {
+            Trace.endSection();
+        }
+    }
+
+    public static void setCounter(String name, long value) {
+        if (Trace.isEnabled()) {
+            Trace.setCounter(name, value);
+        }
+    }
+
+    /**
+     * Publishes a counter from a numeric string such as a sysfs value, ignoring
+     * values that do not parse.
+     */
+    public static void setCounter(String name, String value) {
+        if (Trace.isEnabled()) {
+            try {
+                Trace.setCounter(name, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                // Not a number, nothing to plot
+            }
+        }
+    }
+}
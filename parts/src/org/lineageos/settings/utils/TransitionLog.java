@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.utils;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Remembers the last few state transitions a policy applied, plus counters of issued,
+ * skipped and failed writes, for dumpsys. The ring is allocated up front so recording
+ * a transition does not allocate.
+ */
+public final class TransitionLog {
+
+    private static final String DATE_FORMAT = "MM-dd HH:mm:ss.SSS";
+
+    private final long[] mTimes;
+    private final String[] mSubjects;
+    private final String[] mValues;
+    private final boolean[] mFailed;
+
+    private int mNext;
+    private int mSize;
+
+    private long mWriteCount;
+    private long mSkipCount;
+    private long mFailCount;
+
+    public TransitionLog(int capacity) {
+        mTimes = new long[capacity];
+        mSubjects = new String[capacity];
+        mValues = new String[capacity];
+        mFailed = new boolean[capacity];
+    }
+
+    /**
+     * Records a value that was written to its node or setting.
+     *
+     * @param subject what caused the write, e.g. the foreground package, may be null
+     */
+    public synchronized void recordWrite(String subject, String value, boolean success) {
+        mWriteCount++;
+        if (!success) {
+            mFailCount++;
+        }
+        mTimes[mNext] = System.currentTimeMillis();
+        mSubjects[mNext] = subject;
+        mValues[mNext] = value;
+        mFailed[mNext] = !success;
+        mNext = (mNext + 1) % mTimes.length;
+        if (mSize < mTimes.length) {
+            mSize++;
+        }
+    }
+
+    /**
+     * Counts a write that was not issued because the value was already applied.
+     */
+    public synchronized void recordSkip() {
+        mSkipCount++;
+    }
+
+    public synchronized void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "writes=" + mWriteCount + " skipped=" + mSkipCount
+                + " failed=" + mFailCount);
+        pw.println(prefix + "last " + mSize + " transitions:");
+        final SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+        final Date date = new Date();
+        for (int i = 0; i < mSize; i++) {
+            final int index = (mNext - mSize + i + mTimes.length) % mTimes.length;
+            date.setTime(mTimes[index]);
+            pw.print(prefix + "  " + format.format(date) + " ");
+            if (mSubjects[index] != null) {
+                pw.print(mSubjects[index] + " -> ");
+            }
+            pw.println(mValues[index] + (mFailed[index] ? " (failed)" : ""));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.doze;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.UserHandle;
+import android.provider.Settings;
+import android.system.OsConstants;
+
+import androidx.preference.PreferenceManager;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.lineageos.settings.testing.FakeSysfs;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class DozeControllerTest {
+
+    private static final long TIMEOUT_MS = 2000;
+
+    private Context mContext;
+    private FakeSysfs mSysfs;
+    private DozeController mController;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = ApplicationProvider.getApplicationContext();
+        Settings.Secure.putIntForUser(mContext.getContentResolver(),
+                Settings.Secure.DOZE_ALWAYS_ON, 1, UserHandle.USER_CURRENT);
+        PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                .putString(DozeUtils.DOZE_BRIGHTNESS_KEY, DozeUtils.DOZE_BRIGHTNESS_HBM)
+                .commit();
+        mSysfs = new FakeSysfs().node(DozeUtils.DOZE_MODE_PATH, DozeUtils.DOZE_MODE_HBM);
+
+        mController = new DozeController();
+        mController.onStart(mContext, new Handler(Looper.getMainLooper()));
+        mController.onScreenStateChanged(false);
+    }
+
+    @After
+    public void tearDown() {
+        mController.onStop();
+        mSysfs.close();
+    }
+
+    @Test
+    public void pocketDimsThePanelAndLeavingRestoresTheChoice() throws Exception {
+        mController.onPocketStateChanged(true);
+        assertTrue(mSysfs.awaitValue(DozeUtils.DOZE_MODE_PATH, DozeUtils.DOZE_MODE_LBM,
+                TIMEOUT_MS));
+
+        mController.onPocketStateChanged(false);
+        assertTrue(mSysfs.awaitValue(DozeUtils.DOZE_MODE_PATH, DozeUtils.DOZE_MODE_HBM,
+                TIMEOUT_MS));
+
+        assertEquals(Arrays.asList(DozeUtils.DOZE_MODE_LBM, DozeUtils.DOZE_MODE_HBM),
+                mSysfs.getWrites(DozeUtils.DOZE_MODE_PATH));
+    }
+
+    @Test
+    public void pocketIsIgnoredWithoutAlwaysOn() throws Exception {
+        Settings.Secure.putIntForUser(mContext.getContentResolver(),
+                Settings.Secure.DOZE_ALWAYS_ON, 0, UserHandle.USER_CURRENT);
+
+        mController.onPocketStateChanged(true);
+
+        assertFalse(mSysfs.awaitAttempts(DozeUtils.DOZE_MODE_PATH, 1, 200));
+    }
+
+    @Test
+    public void failedWriteIsReportedWithoutRetry() throws Exception {
+        mSysfs.failNext(DozeUtils.DOZE_MODE_PATH, OsConstants.EIO, 1);
+
+        final boolean success = DozeUtils.setDozeMode(DozeUtils.DOZE_MODE_LBM)
+                .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertFalse(success);
+        assertEquals(1, mSysfs.getAttempts(DozeUtils.DOZE_MODE_PATH).size());
+        assertEquals(DozeUtils.DOZE_MODE_HBM, mSysfs.read(DozeUtils.DOZE_MODE_PATH));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.perf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import android.content.Context;
+import android.widget.Spinner;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PowerModeAdapterTest {
+
+    private static final String GAME = "com.example.game";
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        PowerModeUtils.reset();
+    }
+
+    @After
+    public void tearDown() {
+        PowerModeUtils.reset();
+    }
+
+    @Test
+    public void pickingAModeStoresIt() {
+        // Set up the way the app lists do in onCreateViewHolder
+        final Spinner spinner = new Spinner(mContext);
+        final PowerModeAdapter adapter = new PowerModeAdapter(mContext);
+        spinner.setAdapter(adapter);
+
+        adapter.bind(spinner, GAME);
+        assertSame(adapter, spinner.getOnItemSelectedListener());
+        spinner.getOnItemSelectedListener().onItemSelected(spinner, null,
+                PowerModeUtils.STATE_FIXED_PERFORMANCE, 0);
+
+        assertEquals(PowerModeUtils.STATE_FIXED_PERFORMANCE,
+                new PowerModeUtils(mContext).getStateForPackage(GAME));
+    }
+
+    @Test
+    public void reboundSpinnerStoresForTheNewPackage() {
+        final Spinner spinner = new Spinner(mContext);
+        final PowerModeAdapter adapter = new PowerModeAdapter(mContext);
+        spinner.setAdapter(adapter);
+        adapter.bind(spinner, "com.example.other");
+
+        adapter.bind(spinner, GAME);
+        spinner.getOnItemSelectedListener().onItemSelected(spinner, null,
+                PowerModeUtils.STATE_SUSTAINED_PERFORMANCE, 0);
+
+        final PowerModeUtils utils = new PowerModeUtils(mContext);
+        assertEquals(PowerModeUtils.STATE_SUSTAINED_PERFORMANCE,
+                utils.getStateForPackage(GAME));
+        assertEquals(PowerModeUtils.STATE_NONE, utils.getStateForPackage("com.example.other"));
+    }
+}
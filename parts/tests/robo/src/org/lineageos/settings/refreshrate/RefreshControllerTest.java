@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.refreshrate;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class RefreshControllerTest {
+
+    private static final String STANDARD = "com.example.reader";
+    private static final String LAND = "com.example.video";
+    private static final String OTHER = "com.example.other";
+
+    private ContentResolver mResolver;
+    private RefreshController mController;
+
+    @Before
+    public void setUp() {
+        final Context context = ApplicationProvider.getApplicationContext();
+        mResolver = context.getContentResolver();
+        RefreshUtils.reset();
+        Settings.System.putFloat(mResolver, "min_refresh_rate", 60f);
+        Settings.System.putFloat(mResolver, "peak_refresh_rate", 120f);
+
+        final RefreshUtils utils = new RefreshUtils(context);
+        utils.writePackage(STANDARD, RefreshUtils.STATE_STANDARD);
+        utils.writePackage(LAND, RefreshUtils.STATE_LAND);
+
+        mController = new RefreshController();
+        mController.onStart(context, new Handler(Looper.getMainLooper()));
+    }
+
+    @After
+    public void tearDown() {
+        mController.onStop();
+        RefreshUtils.reset();
+    }
+
+    @Test
+    public void profiledAppGetsItsRates() {
+        mController.onForegroundAppChanged(STANDARD);
+
+        assertRates(60f, 60f);
+    }
+
+    @Test
+    public void userRatesComeBackAfterTheApp() {
+        mController.onForegroundAppChanged(STANDARD);
+        mController.onForegroundAppChanged(OTHER);
+
+        assertRates(60f, 120f);
+    }
+
+    @Test
+    public void landscapeProfileFollowsTheOrientation() {
+        mController.onForegroundAppChanged(LAND);
+        assertRates(120f, 120f);
+
+        mController.onOrientationChanged(true);
+        assertRates(60f, 60f);
+
+        mController.onOrientationChanged(false);
+        assertRates(120f, 120f);
+    }
+
+    @Test
+    public void orientationIsIgnoredForOtherProfiles() {
+        mController.onForegroundAppChanged(STANDARD);
+
+        mController.onOrientationChanged(true);
+
+        assertRates(60f, 60f);
+    }
+
+    private void assertRates(float min, float peak) {
+        assertEquals(min, Settings.System.getFloat(mResolver, "min_refresh_rate", 0f), 0f);
+        assertEquals(peak, Settings.System.getFloat(mResolver, "peak_refresh_rate", 0f), 0f);
+    }
+}
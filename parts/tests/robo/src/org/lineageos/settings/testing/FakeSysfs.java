@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.testing;
+
+import android.system.OsConstants;
+
+import org.lineageos.settings.utils.FileUtils;
+import org.lineageos.settings.utils.SysfsWriter;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A fake kernel tree for tests. Nodes are regular files below a temporary root, which
+ * {@link FileUtils} reads through, and every {@link SysfsWriter} write goes through this
+ * class, which records it, can delay or hold it and can fail it with a given errno.
+ */
+public final class FakeSysfs implements SysfsWriter.Backend, AutoCloseable {
+
+    // Written by sync(), never recorded
+    private static final String SYNC_PATH = "fake-sysfs-sync";
+
+    /** One write attempt as seen by the fake kernel. */
+    public static final class Write {
+        public final String path;
+        public final String value;
+        public final int errno;
+        /** {@link System#nanoTime()} when the attempt reached the kernel. */
+        public final long timeNanos;
+
+        private Write(String path, String value, int errno, long timeNanos) {
+            this.path = path;
+            this.value = value;
+            this.errno = errno;
+            this.timeNanos = timeNanos;
+        }
+    }
+
+    private final File mRoot;
+    private final Object mLock = new Object();
+    // All guarded by mLock
+    private final List<Write> mWrites = new ArrayList<>();
+    private final Map<String, Deque<Integer>> mErrors = new HashMap<>();
+    private final Map<String, Long> mLatencyMs = new HashMap<>();
+    private final Set<String> mBlocked = new HashSet<>();
+    private final Set<String> mInside = new HashSet<>();
+
+    public FakeSysfs() throws IOException {
+        mRoot = Files.createTempDirectory("sysfs").toFile();
+        FileUtils.setRoot(mRoot.getPath());
+        SysfsWriter.setBackend(this);
+    }
+
+    /**
+     * Creates a node holding the given value.
+     */
+    public FakeSysfs node(String path, String value) throws IOException {
+        final File file = resolve(path);
+        file.getParentFile().mkdirs();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(value);
+        }
+        return this;
+    }
+
+    /**
+     * Fails the next writes of the given node with the given errno, once per entry.
+     */
+    public void failNext(String path, int errno, int times) {
+        synchronized (mLock) {
+            final Deque<Integer> errors = mErrors.computeIfAbsent(path, p -> new ArrayDeque<>());
+            for (int i = 0; i < times; i++) {
+                errors.add(errno);
+            }
+        }
+    }
+
+    /**
+     * Makes every write of the given node block the writer for the given time.
+     */
+    public void setLatency(String path, long latencyMs) {
+        synchronized (mLock) {
+            mLatencyMs.put(path, latencyMs);
+        }
+    }
+
+    /**
+     * Makes the next writes of the given node wait inside the kernel until
+     * {@link #unblock} is called, see {@link #awaitBlocked}.
+     */
+    public void block(String path) {
+        synchronized (mLock) {
+            mBlocked.add(path);
+        }
+    }
+
+    /**
+     * Lets writes of the given node that are waiting inside the kernel go through.
+     */
+    public void unblock(String path) {
+        synchronized (mLock) {
+            mBlocked.remove(path);
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until a writer is held inside a write of the given node by {@link #block}.
+     *
+     * @return false if that did not happen within the timeout
+     */
+    public boolean awaitBlocked(String path, long timeoutMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (mLock) {
+            while (!mInside.contains(path)) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                mLock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits until everything queued on the writer so far went through, including the
+     * completions the writes ran. Retries scheduled meanwhile are not waited for.
+     *
+     * @return false if that did not happen within the timeout
+     */
+    public boolean sync(long timeoutMs) throws InterruptedException {
+        try {
+            // The writer is a single thread, so this runs after everything before it
+            SysfsWriter.writeLine(SYNC_PATH, "").get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the current contents of the node, null if it does not exist
+     */
+    public String read(String path) throws IOException {
+        final File file = resolve(path);
+        if (!file.exists()) {
+            return null;
+        }
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return every write attempt of the node, failed ones included, oldest first
+     */
+    public List<Write> getAttempts(String path) {
+        final List<Write> attempts = new ArrayList<>();
+        synchronized (mLock) {
+            for (Write write : mWrites) {
+                if (write.path.equals(path)) {
+                    attempts.add(write);
+                }
+            }
+        }
+        return Collections.unmodifiableList(attempts);
+    }
+
+    /**
+     * @return the values successfully written to the node, oldest first
+     */
+    public List<String> getWrites(String path) {
+        final List<String> values = new ArrayList<>();
+        for (Write write : getAttempts(path)) {
+            if (write.errno == 0) {
+                values.add(write.value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Waits until the node saw at least the given number of write attempts.
+     *
+     * @return false if that did not happen within the timeout
+     */
+    public boolean awaitAttempts(String path, int count, long timeoutMs)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (mLock) {
+            while (getAttempts(path).size() < count) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                mLock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the node holds the given value after a successful write.
+     *
+     * @return false if that did not happen within the timeout
+     */
+    public boolean awaitValue(String path, String value, long timeoutMs)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (mLock) {
+            while (true) {
+                final List<String> writes = getWrites(path);
+                if (!writes.isEmpty() && writes.get(writes.size() - 1).equals(value)) {
+                    return true;
+                }
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                mLock.wait(remaining);
+            }
+        }
+    }
+
+    @Override
+    public int write(String fileName, String value) {
+        if (SYNC_PATH.equals(fileName)) {
+            return 0;
+        }
+        final long latencyMs;
+        final Integer injected;
+        synchronized (mLock) {
+            if (mBlocked.contains(fileName)) {
+                mInside.add(fileName);
+                mLock.notifyAll();
+                while (mBlocked.contains(fileName)) {
+                    try {
+                        mLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                mInside.remove(fileName);
+            }
+            latencyMs = mLatencyMs.getOrDefault(fileName, 0L);
+            final Deque<Integer> errors = mErrors.get(fileName);
+            injected = errors != null ? errors.poll() : null;
+        }
+        final long timeNanos = System.nanoTime();
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int errno = injected != null ? injected : 0;
+        if (errno == 0) {
+            final File file = resolve(fileName);
+            if (!file.exists()) {
+                // Like the kernel, a node is never created by writing it
+                errno = OsConstants.ENOENT;
+            } else {
+                try (FileWriter writer = new FileWriter(file)) {
+                    writer.write(value);
+                } catch (IOException e) {
+                    errno = OsConstants.EIO;
+                }
+            }
+        }
+
+        synchronized (mLock) {
+            mWrites.add(new Write(fileName, value, errno, timeNanos));
+            mLock.notifyAll();
+        }
+        return errno;
+    }
+
+    @Override
+    public void close() {
+        synchronized (mLock) {
+            // Never leave the writer thread stuck for the next test
+            mBlocked.clear();
+            mLock.notifyAll();
+        }
+        SysfsWriter.setBackend(null);
+        FileUtils.setRoot(null);
+        deleteRecursively(mRoot);
+    }
+
+    private File resolve(String path) {
+        return new File(mRoot, path);
+    }
+
+    private static void deleteRecursively(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
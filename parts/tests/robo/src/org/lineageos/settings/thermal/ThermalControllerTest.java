@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2025 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.system.OsConstants;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.lineageos.settings.testing.FakeSysfs;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThermalControllerTest {
+
+    private static final String GAME = "com.example.game";
+    private static final String OTHER = "com.example.other";
+    private static final long TIMEOUT_MS = 2000;
+
+    private FakeSysfs mSysfs;
+    private ThermalController mController;
+
+    @Before
+    public void setUp() throws Exception {
+        final Context context = ApplicationProvider.getApplicationContext();
+        ThermalUtils.reset();
+        mSysfs = new FakeSysfs().node(ThermalUtils.THERMAL_SCONFIG, "0");
+        new ThermalUtils(context).writePackage(GAME, ThermalUtils.STATE_GAMING);
+
+        mController = new ThermalController();
+        mController.onStart(context, new Handler(Looper.getMainLooper()));
+    }
+
+    @After
+    public void tearDown() {
+        mController.onStop();
+        mSysfs.close();
+        ThermalUtils.reset();
+    }
+
+    @Test
+    public void foregroundGameAppliesItsProfile() throws Exception {
+        mController.onForegroundAppChanged(GAME);
+
+        assertTrue(mSysfs.awaitValue(ThermalUtils.THERMAL_SCONFIG, "9", TIMEOUT_MS));
+        assertEquals("9", mSysfs.read(ThermalUtils.THERMAL_SCONFIG));
+    }
+
+    @Test
+    public void switchingAwayRestoresTheDefault() throws Exception {
+        mController.onForegroundAppChanged(GAME);
+        assertTrue(mSysfs.awaitValue(ThermalUtils.THERMAL_SCONFIG, "9", TIMEOUT_MS));
+
+        mController.onForegroundAppChanged(OTHER);
+
+        assertTrue(mSysfs.awaitValue(ThermalUtils.THERMAL_SCONFIG, "0", TIMEOUT_MS));
+        assertEquals(Arrays.asList("9", "0"),
+                mSysfs.getWrites(ThermalUtils.THERMAL_SCONFIG));
+    }
+
+    @Test
+    public void sameProfileIsNotWrittenAgain() throws Exception {
+        mController.onForegroundAppChanged(GAME);
+        assertTrue(mSysfs.awaitValue(ThermalUtils.THERMAL_SCONFIG, "9", TIMEOUT_MS));
+
+        mController.onScreenStateChanged(true);
+        mController.onForegroundAppChanged(GAME);
+
+        assertFalse(mSysfs.awaitAttempts(ThermalUtils.THERMAL_SCONFIG, 2, 200));
+    }
+
+    @Test
+    public void screenOffFallsBackToTheDefault() throws Exception {
+        mController.onForegroundAppChanged(GAME);
+        assertTrue(mSysfs.awaitValue(ThermalUtils.THERMAL_SCONFIG, "9", TIMEOUT_MS));
+
+        mController.onScreenStateChanged(false);
+
+        assertTrue(mSysfs.awaitValue(ThermalUtils.THERMAL_SCONFIG, "0", TIMEOUT_MS));
+    }
+
+    @Test
+    public void busyNodeIsRetried() throws Exception {
+        mSysfs.failNext(ThermalUtils.THERMAL_SCONFIG, OsConstants.EBUSY, 2);
+
+        mController.onForegroundAppChanged(GAME);
+
+        assertTrue(mSysfs.awaitValue(ThermalUtils.THERMAL_SCONFIG, "9", TIMEOUT_MS));
+        assertEquals(3, mSysfs.getAttempts(ThermalUtils.THERMAL_SCONFIG).size());
+        assertEquals(Collections.singletonList("9"),
+                mSysfs.getWrites(ThermalUtils.THERMAL_SCONFIG));
+    }
+
+    @Test
+    public void failedWriteIsNotTakenForApplied() throws Exception {
+        mSysfs.failNext(ThermalUtils.THERMAL_SCONFIG, OsConstants.EIO, 1);
+        mController.onForegroundAppChanged(GAME);
+        assertTrue(mSysfs.awaitAttempts(ThermalUtils.THERMAL_SCONFIG, 1, TIMEOUT_MS));
+        // Let the completion forget the failed value
+        assertTrue(mSysfs.sync(TIMEOUT_MS));
+
+        mController.onForegroundAppChanged(GAME);
+
+        assertTrue(mSysfs.awaitValue(ThermalUtils.THERMAL_SCONFIG, "9", TIMEOUT_MS));
+    }
+
+    @Test
+    public void valuesQueuedDuringASlowWriteAreCoalesced() throws Exception {
+        mSysfs.block(ThermalUtils.THERMAL_SCONFIG);
+
+        mController.onForegroundAppChanged(GAME);
+        // Queue more only once the writer is inside the first write
+        assertTrue(mSysfs.awaitBlocked(ThermalUtils.THERMAL_SCONFIG, TIMEOUT_MS));
+        mController.onForegroundAppChanged(OTHER);
+        mController.onForegroundAppChanged(GAME);
+        mSysfs.unblock(ThermalUtils.THERMAL_SCONFIG);
+
+        assertTrue(mSysfs.awaitAttempts(ThermalUtils.THERMAL_SCONFIG, 2, TIMEOUT_MS));
+        assertFalse(mSysfs.getWrites(ThermalUtils.THERMAL_SCONFIG).contains("0"));
+        assertEquals("9", mSysfs.read(ThermalUtils.THERMAL_SCONFIG));
+    }
+}